@@ -0,0 +1,133 @@
+package com.discordbolt.boltbot.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes an index of every {@code @BotCommand} method and {@code @IndexedModule} class at compile
+ * time, so the bot does not have to scan the classpath when it starts.
+ * <p>
+ * Each index is a plain text resource with one entry per line. Command entries are written as
+ * {@code binaryClassName#methodName}, module entries as the binary class name.
+ * <p>
+ * The processor only reads its own annotations, so Gradle runs it as an aggregating incremental
+ * processor. Concrete {@code BotModule} implementations compiled without {@code @IndexedModule}
+ * fail the build, as the bot only instantiates the modules of the index once it exists.
+ */
+@SupportedAnnotationTypes({BoltIndexProcessor.BOT_COMMAND, BoltIndexProcessor.INDEXED_MODULE})
+public class BoltIndexProcessor extends AbstractProcessor {
+
+    static final String BOT_COMMAND = "com.discordbolt.boltbot.discord.api.commands.BotCommand";
+    static final String INDEXED_MODULE = "com.discordbolt.boltbot.discord.api.IndexedModule";
+    static final String BOT_MODULE = "com.discordbolt.boltbot.discord.api.BotModule";
+    static final String COMMAND_INDEX = "META-INF/boltbot/commands";
+    static final String MODULE_INDEX = "META-INF/boltbot/modules";
+
+    private final Set<String> commands = new TreeSet<>();
+    private final Set<String> modules = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex(COMMAND_INDEX, commands);
+            writeIndex(MODULE_INDEX, modules);
+            return false;
+        }
+
+        TypeElement botCommand = processingEnv.getElementUtils().getTypeElement(BOT_COMMAND);
+        if (botCommand != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(botCommand)) {
+                indexCommand(element);
+            }
+        }
+
+        TypeElement botModule = processingEnv.getElementUtils().getTypeElement(BOT_MODULE);
+        TypeElement indexedModule = processingEnv.getElementUtils().getTypeElement(INDEXED_MODULE);
+        if (botModule != null && indexedModule != null) {
+            TypeMirror moduleType = processingEnv.getTypeUtils().erasure(botModule.asType());
+            for (Element element : roundEnv.getElementsAnnotatedWith(indexedModule)) {
+                indexModule(element, moduleType);
+            }
+            for (Element element : roundEnv.getRootElements()) {
+                checkModules(element, moduleType, indexedModule);
+            }
+        }
+        return false;
+    }
+
+    private void indexCommand(Element method) {
+        if (method.getKind() != ElementKind.METHOD) {
+            return;
+        }
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || !method.getModifiers().contains(Modifier.STATIC)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@BotCommand methods must be public static to be registered", method);
+            return;
+        }
+        TypeElement type = (TypeElement) method.getEnclosingElement();
+        commands.add(processingEnv.getElementUtils().getBinaryName(type) + "#" + method.getSimpleName());
+    }
+
+    private void indexModule(Element element, TypeMirror moduleType) {
+        TypeElement type = (TypeElement) element;
+        if (!isModule(type, moduleType)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@IndexedModule classes must be concrete BotModule implementations", type);
+            return;
+        }
+        modules.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+    }
+
+    /**
+     * Fail on modules compiled in this round which would be missing from the index
+     */
+    private void checkModules(Element element, TypeMirror moduleType, TypeElement indexedModule) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (isModule(type, moduleType) && type.getAnnotationMirrors().stream()
+                .noneMatch(mirror -> mirror.getAnnotationType().asElement().equals(indexedModule))) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "BotModule implementations must be annotated with @IndexedModule, the bot only instantiates indexed modules", type);
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            checkModules(enclosed, moduleType, indexedModule);
+        }
+    }
+
+    private boolean isModule(TypeElement type, TypeMirror moduleType) {
+        return type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), moduleType);
+    }
+
+    private void writeIndex(String resource, Set<String> entries) {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            try (Writer writer = file.openWriter()) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + resource + ": " + e.getMessage());
+        }
+    }
+}
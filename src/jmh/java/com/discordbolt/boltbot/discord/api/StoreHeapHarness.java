@@ -0,0 +1,106 @@
+package com.discordbolt.boltbot.discord.api;
+
+import com.discordbolt.boltbot.discord.api.EntityStores.EntityType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import discord4j.core.DiscordClient;
+import discord4j.core.DiscordClientBuilder;
+import discord4j.store.jdk.JdkStoreService;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by the Discord4J entity store with its default configuration compared to the
+ * bounded configuration of {@link EntityStoreProperties}, populated with {@link SyntheticGuilds}.
+ * EntityStoresTest checks the same in the build with a smaller load.
+ *
+ * <p>Run with {@code ./gradlew storeHeapTest --args='--guilds=10000'}. Options:
+ * <pre>
+ * --guilds=10000      number of guilds
+ * --channels=5        text channels per guild
+ * --roles=3           roles per guild
+ * --members=50        members per guild, each with their own user
+ * --presences=0.5     fraction of members with a presence
+ * --messages=20       messages per guild
+ * </pre>
+ * A scenario which does not fit in the heap is reported as exceeding it.
+ */
+public class StoreHeapHarness {
+
+    private final Map<String, String> options;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private StoreHeapHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    private void run() throws Exception {
+        EntityStoreProperties defaults = new EntityStoreProperties();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("maxHeapMB", memory.getHeapMemoryUsage().getMax() >> 20);
+        report.put("default", measure(new EntityStores(EnumSet.allOf(EntityType.class), Map.of())));
+        report.put("bounded", measure(new EntityStores(EnumSet.copyOf(defaults.getEntities()), defaults.getMaxEntries())));
+        System.out.println(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+    }
+
+    private Map<String, Object> measure(EntityStores entityStores) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long before = usedAfterGc();
+        long start = System.nanoTime();
+        try {
+            DiscordClient client = new DiscordClientBuilder("offline")
+                    .setStoreService(entityStores.forShard(1, new JdkStoreService()))
+                    .build();
+            new SyntheticGuilds()
+                    .guilds((int) longOption("guilds", 10_000))
+                    .channels((int) longOption("channels", 5))
+                    .roles((int) longOption("roles", 3))
+                    .members((int) longOption("members", 50))
+                    .presences(doubleOption("presences", 0.5))
+                    .messages((int) longOption("messages", 20))
+                    .populate(client);
+            result.put("populateMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            result.put("retainedMB", (usedAfterGc() - before) >> 20);
+            result.put("store", entityStores.snapshot());
+            // Keep the client reachable until it has been measured
+            Reference.reachabilityFence(client);
+        } catch (OutOfMemoryError e) {
+            result.clear();
+            result.put("exceededHeap", true);
+        }
+        return result;
+    }
+
+    private long usedAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are given as --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new StoreHeapHarness(options).run();
+        System.exit(0);
+    }
+
+    private long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+}
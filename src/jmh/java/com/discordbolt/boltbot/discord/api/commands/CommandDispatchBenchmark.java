@@ -0,0 +1,54 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Command lookup with the dispatch index compared to the linear scan CommandListener used before
+ * the index existed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandDispatchBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int commandCount;
+
+    private List<CustomCommand> commands;
+    private CommandIndex index;
+    private String message;
+
+    @Setup
+    public void setup() {
+        commands = Commands.create(commandCount);
+        index = new CommandIndex(commands);
+        // A sub command in the middle of the registered commands
+        int target = commandCount / 2 | 1;
+        message = "!cmd" + (target - 1) + " sub" + target + " first second";
+    }
+
+    @Benchmark
+    public CustomCommand indexLookup() {
+        return index.find(CommandTokens.tokenize(message, 1));
+    }
+
+    @Benchmark
+    public CustomCommand linearScan() {
+        return LinearCommandMatcher.find(commands, message.substring(1));
+    }
+}
@@ -0,0 +1,60 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares calling a {@link BotCommand} method through reflection with the generated {@link
+ * CommandInvoker}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandInvocationBenchmark {
+
+    private static long invocations;
+
+    private Method method;
+    private CommandInvoker invoker;
+
+    public static void command(CommandContext commandContext) {
+        invocations++;
+    }
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        method = CommandInvocationBenchmark.class.getMethod("command", CommandContext.class);
+        invoker = MethodCommand.bind(method);
+    }
+
+    @Benchmark
+    public long reflection() throws ReflectiveOperationException {
+        method.invoke(null, (CommandContext) null);
+        return invocations;
+    }
+
+    @Benchmark
+    public long invoker() throws Exception {
+        invoker.invoke(null);
+        return invocations;
+    }
+
+    @Benchmark
+    public long direct() {
+        command(null);
+        return invocations;
+    }
+}
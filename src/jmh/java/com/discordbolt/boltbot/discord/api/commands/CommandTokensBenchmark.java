@@ -0,0 +1,48 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Argument parsing of CommandContext
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandTokensBenchmark {
+
+    @Param({"!ping", "!help misc", "!remind   me in \"2 hours\" to   check the   oven"})
+    private String message;
+
+    @Benchmark
+    public CommandTokens tokenize() {
+        return CommandTokens.tokenize(message, 1);
+    }
+
+    @Benchmark
+    public void tokenizeAndReadArguments(Blackhole blackhole) {
+        List<String> arguments = CommandTokens.tokenize(message, 1).asList();
+        for (int i = 0; i < arguments.size(); i++) {
+            blackhole.consume(arguments.get(i));
+        }
+    }
+
+    @Benchmark
+    public String[] split() {
+        return message.substring(1).split(" ");
+    }
+}
@@ -0,0 +1,46 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.spec.EmbedCreateSpec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpCommandBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int commandCount;
+
+    private HelpCommand help;
+
+    @Setup
+    public void setup() {
+        CommandManager manager = new CommandManager(Commands.create(commandCount));
+        help = new HelpCommand(manager);
+    }
+
+    @Benchmark
+    public EmbedCreateSpec createHelpEmbed() {
+        help.invalidate();
+        return help.createHelpEmbed(new EmbedCreateSpec(), help.getPage("!", null));
+    }
+
+    @Benchmark
+    public EmbedCreateSpec cachedHelpEmbed() {
+        return help.createHelpEmbed(new EmbedCreateSpec(), help.getPage("!", null));
+    }
+}
@@ -0,0 +1,399 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.util.LatencyHistogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import discord4j.core.DiscordClient;
+import discord4j.core.DiscordClientBuilder;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.util.Permission;
+import discord4j.core.object.util.PermissionSet;
+import discord4j.core.shard.ShardAwareStoreService;
+import discord4j.core.shard.ShardingJdkStoreRegistry;
+import discord4j.core.shard.ShardingStoreRegistry;
+import discord4j.store.jdk.JdkStoreService;
+import java.awt.Color;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import reactor.core.publisher.Mono;
+
+/**
+ * Offline end-to-end load test of the Command API. Synthetic guilds, channels and members are put
+ * in the store of a DiscordClient that never logs in, MessageCreateEvents are published to its
+ * event dispatcher and every REST request goes to a {@link FakeRouter}. Reports sustained commands
+ * per second, end-to-end latency percentiles and heap usage.
+ *
+ * <p>Run with {@code ./gradlew loadTest --args='--duration=60 --guilds=500'}. Options:
+ * <pre>
+ * --duration=30          seconds to measure
+ * --warmup=10            seconds to run before measuring
+ * --rate=0               messages per second, 0 to send as fast as commands complete
+ * --max-in-flight=2000   commands waiting for completion before the generator pauses
+ * --guilds=200           number of guilds
+ * --channels=5           text channels per guild
+ * --members=500          members per guild
+ * --mods=0.1             fraction of members with the moderator role
+ * --skew=1.0             zipf exponent of guild and member activity, 0 for uniform
+ * --rest-latency=20      mean latency of a REST request in milliseconds
+ * --route-limit=false    pace replies by Discord's per channel message limit
+ * --shards=1             number of shards, each guild's events arrive on its own shard
+ * --duplicates=0         fraction of messages delivered twice, as after a gateway resume
+ * --mix=ping:30,...      weights of the message kinds below
+ * </pre>
+ * Message kinds: ping, embed, help, echo, badargs, daily (per user cooldown), purge (needs
+ * MANAGE_MESSAGES), report (blocking, own lane), clean (deletes the trigger), chatter (no command).
+ */
+public class LoadHarness {
+
+    private static final String PREFIX = "!";
+    private static final long MOD_ROLE_OFFSET = 1L << 50;
+    private static final long DISCORD_EPOCH = 1420070400000L;
+
+    private static final Map<String, String> MESSAGES = new LinkedHashMap<>();
+
+    static {
+        MESSAGES.put("ping", "!ping");
+        MESSAGES.put("embed", "!embed");
+        MESSAGES.put("help", "!help");
+        MESSAGES.put("echo", "!echo hello world");
+        MESSAGES.put("badargs", "!echo");
+        MESSAGES.put("daily", "!daily");
+        MESSAGES.put("purge", "!purge 10");
+        MESSAGES.put("report", "!report");
+        MESSAGES.put("clean", "!clean");
+        MESSAGES.put("chatter", "hello everyone, how is it going?");
+    }
+
+    private final Map<String, String> options;
+    private final OfflineDiscord[] shards;
+    private final FakeRouter router;
+    private final CommandManager manager;
+
+    private final long[] guildIds;
+    private final int[] guildShards;
+    private final long[][] channelIds;
+    private final int members;
+    private final double[] guildCdf;
+    private final double[] memberCdf;
+    private final String[] mix;
+    private final double[] mixCdf;
+
+    private final LongAdder commandsSent = new LongAdder();
+    private final LongAdder chatterSent = new LongAdder();
+    private final LongAdder duplicatesSent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final Map<String, LongAdder> results = new ConcurrentHashMap<>();
+    private final AtomicReference<LatencyHistogram> measured = new AtomicReference<>(new LatencyHistogram());
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    private volatile boolean recording;
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+        this.router = new FakeRouter(Duration.ofMillis(longOption("rest-latency", 20)));
+        // Shards share one store like the bot's shards do, each guild is only ever touched by its own shard
+        ShardingStoreRegistry storeRegistry = new ShardingJdkStoreRegistry();
+        this.shards = new OfflineDiscord[(int) longOption("shards", 1)];
+        for (int shard = 0; shard < shards.length; shard++) {
+            shards[shard] = new OfflineDiscord(new DiscordClientBuilder("offline")
+                    .setRouterFactory(router)
+                    .setShardIndex(shard)
+                    .setShardCount(shards.length)
+                    .setStoreService(new ShardAwareStoreService(storeRegistry, new JdkStoreService())));
+        }
+
+        int guilds = (int) longOption("guilds", 200);
+        int channels = (int) longOption("channels", 5);
+        this.members = (int) longOption("members", 500);
+        double mods = doubleOption("mods", 0.1);
+        double skew = doubleOption("skew", 1.0);
+
+        long start = System.nanoTime();
+        guildIds = new long[guilds];
+        guildShards = new int[guilds];
+        channelIds = new long[guilds][channels];
+        for (int g = 0; g < guilds; g++) {
+            // Discord assigns a guild to shard (guild_id >> 22) % shard_count
+            long guildId = ((g + 1L) << 22) | 1;
+            guildIds[g] = guildId;
+            guildShards[g] = (int) ((guildId >> 22) % shards.length);
+            OfflineDiscord discord = shards[guildShards[g]];
+            discord.role(guildId, guildId, "@everyone", PermissionSet.of(Permission.SEND_MESSAGES, Permission.READ_MESSAGE_HISTORY).getRawValue());
+            discord.role(guildId, guildId + MOD_ROLE_OFFSET, "mod", PermissionSet.of(Permission.MANAGE_MESSAGES).getRawValue());
+            for (int c = 0; c < channels; c++) {
+                channelIds[g][c] = (guildId << 8) + c;
+                discord.textChannel(channelIds[g][c], guildId, "channel-" + c);
+            }
+            for (int m = 0; m < members; m++) {
+                long userId = userId(g, m);
+                if (m < members * mods) {
+                    discord.member(guildId, userId, guildId + MOD_ROLE_OFFSET);
+                } else {
+                    discord.member(guildId, userId);
+                }
+            }
+            discord.guild(guildId, userId(g, 0), new long[]{guildId, guildId + MOD_ROLE_OFFSET}, channelIds[g]);
+        }
+        System.out.printf("Populated %d guilds, %d channels and %d members in %d ms%n", guilds, guilds * channels, guilds * members,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        guildCdf = zipf(guilds, skew);
+        memberCdf = zipf(members, skew);
+
+        Map<String, Double> weights = parseMix(options.getOrDefault("mix", "ping:30,embed:10,help:5,echo:10,badargs:5,daily:10,purge:5,report:5,clean:5,chatter:15"));
+        mix = weights.keySet().toArray(new String[0]);
+        mixCdf = cdf(weights.values().stream().mapToDouble(Double::doubleValue).toArray());
+
+        manager = new CommandManager(createCommands());
+        for (int shard = 0; shard < shards.length; shard++) {
+            manager.attach(shards[shard].getClient(), shard, shards.length);
+        }
+        manager.configureLane("slow", 4, 256, "slow");
+        if (!Boolean.parseBoolean(options.getOrDefault("route-limit", "false"))) {
+            manager.setReplyDispatcher(new ReplyDispatcher(0, Duration.ZERO));
+        }
+        manager.onCommandExecution(this::onExecution, 1 << 16, OverflowPolicy.DROP_NEWEST);
+    }
+
+    private static long userId(int guild, int member) {
+        return 10_000_000_000L + (long) guild * 1_000_000 + member;
+    }
+
+    private static List<CustomCommand> createCommands() {
+        List<CustomCommand> commands = new ArrayList<>();
+        commands.add(new LoadCommand("ping", "general", cc -> cc.replyWith("Pong!")));
+        commands.add(new LoadCommand("embed", "general", cc -> cc.replyWith(spec -> spec.setColor(Color.CYAN).addField("Load", "test", true))).setCacheTtl(Duration.ofSeconds(30)));
+        commands.add(new LoadCommand("echo", "general", cc -> cc.replyWith(cc.combineArgs(1, cc.getArgCount() - 1))).setArgumentCount(3));
+        commands.add(new LoadCommand("daily", "economy", cc -> cc.replyWith("Here is your daily reward.")).setCooldown(Duration.ofSeconds(5)));
+        commands.add(new LoadCommand("purge", "moderation", cc -> cc.replyWith("Purged.")).setPermissions(Permission.MANAGE_MESSAGES));
+        commands.add(new LoadCommand("report", "slow", cc -> {
+            // Stand-in for a command doing blocking IO
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            return cc.replyWith("Report generated.");
+        }));
+        commands.add(new LoadCommand("clean", "moderation", cc -> cc.replyWith("Cleaned.")).setDeleteCommandMessage(true));
+        return commands;
+    }
+
+    private void onExecution(CommandExecution execution) {
+        completed.increment();
+        interval.get().record(execution.getTotalNanos());
+        if (recording) {
+            measured.get().record(execution.getTotalNanos());
+            results.computeIfAbsent(execution.getCheckResult(), k -> new LongAdder()).increment();
+        }
+    }
+
+    private void run() throws Exception {
+        long warmup = TimeUnit.SECONDS.toNanos(longOption("warmup", 10));
+        long duration = TimeUnit.SECONDS.toNanos(longOption("duration", 30));
+        long rate = longOption("rate", 0);
+        long maxInFlight = longOption("max-in-flight", 2000);
+        double duplicates = doubleOption("duplicates", 0);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long start = System.nanoTime();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long lastCompleted = 0;
+        long maxHeap = 0;
+        long gcCountBefore = 0, gcTimeBefore = 0;
+        // Snowflakes of messages created now, as the duplicate check reads their creation time
+        long messageId = (System.currentTimeMillis() - DISCORD_EPOCH) << 22;
+        long sent = 0;
+
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= end) {
+                break;
+            }
+            if (!recording && now >= measureFrom) {
+                measured.set(new LatencyHistogram());
+                results.clear();
+                gcCountBefore = gcCount();
+                gcTimeBefore = gcTime();
+                lastCompleted = completed.sum();
+                recording = true;
+            }
+            if (now >= nextReport) {
+                long heap = memory.getHeapMemoryUsage().getUsed();
+                maxHeap = recording ? Math.max(maxHeap, heap) : maxHeap;
+                LatencyHistogram last = interval.getAndSet(new LatencyHistogram());
+                System.out.printf("%s %6d cmd/s  in flight %5d  p50 %6d us  p99 %7d us  heap %4d MB%n", recording ? "measure" : "warmup ",
+                        last.getCount(), commandsSent.sum() - completed.sum(), TimeUnit.NANOSECONDS.toMicros(last.getPercentile(50)),
+                        TimeUnit.NANOSECONDS.toMicros(last.getPercentile(99)), heap >> 20);
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+
+            if (rate > 0) {
+                long due = start + sent * TimeUnit.SECONDS.toNanos(1) / rate;
+                if (due > now) {
+                    LockSupport.parkNanos(Math.min(due - now, TimeUnit.MILLISECONDS.toNanos(1)));
+                    continue;
+                }
+            }
+            if (commandsSent.sum() - completed.sum() >= maxInFlight) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                continue;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int guild = sample(guildCdf, random.nextDouble());
+            long channelId = channelIds[guild][random.nextInt(channelIds[guild].length)];
+            long userId = userId(guild, sample(memberCdf, random.nextDouble()));
+            String kind = mix[sample(mixCdf, random.nextDouble())];
+            String content = MESSAGES.get(kind);
+
+            OfflineDiscord shard = shards[guildShards[guild]];
+            DiscordClient client = shard.getClient();
+            Message message = shard.message(messageId++, channelId, userId, content);
+            client.getEventDispatcher().publish(new MessageCreateEvent(client, message, guildIds[guild], null));
+            if (duplicates > 0 && random.nextDouble() < duplicates) {
+                client.getEventDispatcher().publish(new MessageCreateEvent(client, message, guildIds[guild], null));
+                duplicatesSent.increment();
+            }
+            if (content.startsWith(PREFIX)) {
+                commandsSent.increment();
+            } else {
+                chatterSent.increment();
+            }
+            sent++;
+        }
+        recording = false;
+        long measuredCompleted = completed.sum() - lastCompleted;
+
+        // Let commands still in flight finish before looking at the heap
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (commandsSent.sum() > completed.sum() + manager.getDroppedExecutions() && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        long gcCount = gcCount() - gcCountBefore;
+        long gcTime = gcTime() - gcTimeBefore;
+        System.gc();
+        long heapAfterGc = memory.getHeapMemoryUsage().getUsed();
+
+        LatencyHistogram latency = measured.get();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("commandsPerSecond", measuredCompleted * TimeUnit.SECONDS.toNanos(1) / duration);
+        report.put("duplicatesSent", duplicatesSent.sum());
+        Map<String, Object> endToEnd = new LinkedHashMap<>(latency.snapshot());
+        endToEnd.put("p90Micros", TimeUnit.NANOSECONDS.toMicros(latency.getPercentile(90)));
+        report.put("endToEndLatency", endToEnd);
+        Map<String, Long> checkResults = new LinkedHashMap<>();
+        results.forEach((result, count) -> checkResults.put(result, count.sum()));
+        report.put("checkResults", checkResults);
+        Map<String, Object> heap = new LinkedHashMap<>();
+        heap.put("maxUsedMB", maxHeap >> 20);
+        heap.put("usedAfterGcMB", heapAfterGc >> 20);
+        heap.put("gcCount", gcCount);
+        heap.put("gcTimeMillis", gcTime);
+        report.put("heap", heap);
+        report.put("rest", router.snapshot());
+        Map<String, Object> metrics = manager.getMetrics();
+        metrics.remove("commands");
+        report.put("commandApi", metrics);
+
+        System.out.println(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are given as --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadHarness(options).run();
+        System.exit(0);
+    }
+
+    private long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private static Map<String, Double> parseMix(String mix) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            if (!MESSAGES.containsKey(parts[0])) {
+                throw new IllegalArgumentException("Unknown message kind " + parts[0] + ", expected one of " + MESSAGES.keySet());
+            }
+            weights.put(parts[0], Double.parseDouble(parts[1]));
+        }
+        return weights;
+    }
+
+    /**
+     * Cumulative distribution of a zipf distribution over n elements
+     */
+    private static double[] zipf(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = 1 / Math.pow(i + 1, exponent);
+        }
+        return cdf(weights);
+    }
+
+    private static double[] cdf(double[] weights) {
+        double total = Arrays.stream(weights).sum();
+        double[] cdf = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cdf[i] = sum / total;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double value) {
+        int index = Arrays.binarySearch(cdf, value);
+        return Math.min(index < 0 ? -index - 1 : index, cdf.length - 1);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /**
+     * A command replying through the given function
+     */
+    private static class LoadCommand extends ReactiveCustomCommand {
+
+        private final Function<CommandContext, Mono<Message>> reply;
+
+        LoadCommand(String command, String module, Function<CommandContext, Mono<Message>> reply) {
+            super(new String[]{command}, "Load test command", command, module);
+            this.reply = reply;
+        }
+
+        @Override
+        public Mono<Message> run(CommandContext commandContext) {
+            return reply.apply(commandContext);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.ValidityCheck.CheckResult;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.TextChannel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The compiled validity checks of a command with channel black and whitelists, evaluated against
+ * Discord4J entities from an offline client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidityCheckBenchmark {
+
+    private static final long GUILD = 100;
+    private static final long CHANNEL = 200;
+
+    private CustomCommand command;
+    private CheckPlan plan;
+    private TextChannel channel;
+    private Message message;
+    private CommandTokens tokens;
+
+    @Setup
+    public void setup() {
+        OfflineDiscord discord = new OfflineDiscord();
+        channel = discord.textChannel(CHANNEL, GUILD, "general");
+        message = discord.message(300, CHANNEL, 400, "!check one two");
+        tokens = CommandTokens.tokenize("!check one two", 1);
+
+        command = new CustomCommand(new String[]{"check"}) {
+            @Override
+            public void execute(CommandContext commandContext) {
+            }
+        }.setChannelBlacklist(1, 2, 3)
+                .setChannelNameBlacklist("spam")
+                .setChannelWhitelist(CHANNEL, 201, 202)
+                .setMinArgumentCount(2)
+                .setMaxArgumentCount(4);
+        plan = command.getCheckPlan();
+    }
+
+    @Benchmark
+    public CheckResult resolvedChannel() {
+        CheckResult result = plan.checkArguments(3);
+        return result != CheckResult.VALID ? result : plan.checkChannel(channel);
+    }
+
+    @Benchmark
+    public CheckResult evaluate() {
+        CommandContext context = new CommandContext(message, command, tokens, "!", 0, System.nanoTime());
+        return plan.evaluate(context).block();
+    }
+}
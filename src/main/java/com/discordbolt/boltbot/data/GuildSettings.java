@@ -0,0 +1,51 @@
+package com.discordbolt.boltbot.data;
+
+import java.util.Collections;
+import java.util.List;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Per-guild settings of the bot
+ */
+@Document(collection = "guilds")
+public class GuildSettings {
+
+    @Id
+    private long id;
+    private List<String> commandPrefixes;
+    // Single prefix of settings saved before guilds could have several, read but never written
+    private String commandPrefix;
+
+    public GuildSettings() {
+    }
+
+    public GuildSettings(long id) {
+        this.id = id;
+    }
+
+    public GuildSettings(GuildSettings other) {
+        this.id = other.id;
+        this.commandPrefixes = other.commandPrefixes;
+        this.commandPrefix = other.commandPrefix;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return command prefixes of the guild, or null if the guild uses the default prefix
+     */
+    public List<String> getCommandPrefixes() {
+        if (commandPrefixes == null && commandPrefix != null) {
+            return Collections.singletonList(commandPrefix);
+        }
+        return commandPrefixes;
+    }
+
+    public void setCommandPrefixes(List<String> commandPrefixes) {
+        this.commandPrefixes = commandPrefixes;
+        this.commandPrefix = null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.discordbolt.boltbot.data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * In-memory view of every guild's settings backed by a {@link GuildSettingsStore}. All settings
+ * are loaded with one bulk read at startup and served from memory. Changes are written behind in
+ * batches on a fixed interval.
+ */
+@Component("GuildSettingsRepository")
+@Profile("prod")
+public class GuildSettingsRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuildSettingsRepository.class);
+
+    private GuildSettingsStore store;
+    private int batchSize;
+
+    private final Map<Long, GuildSettings> settings = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final Disposable flushTask;
+
+    @Autowired
+    public GuildSettingsRepository(GuildSettingsStore store,
+                                   @Value("${boltbot.settings.flush-interval:5s}") Duration flushInterval,
+                                   @Value("${boltbot.settings.batch-size:500}") int batchSize) {
+        this.store = store;
+        this.batchSize = batchSize;
+        this.flushTask = Flux.interval(flushInterval, flushInterval, Schedulers.single())
+                .onBackpressureDrop()
+                .concatMap(tick -> flush().onErrorResume(e -> {
+                    LOGGER.error("Unable to save guild settings", e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    /**
+     * Load the settings of every guild into memory
+     *
+     * @return every loaded guild's settings
+     */
+    public Flux<GuildSettings> load() {
+        long start = System.nanoTime();
+        return store.loadAll()
+                .doOnNext(s -> settings.put(s.getId(), s))
+                .doOnComplete(() -> LOGGER.info("Loaded {} guild settings in {} ms", settings.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Get the custom command prefixes of a guild
+     *
+     * @return command prefixes, or null if the guild uses the default prefix
+     */
+    public List<String> getCommandPrefixes(long guildId) {
+        GuildSettings s = settings.get(guildId);
+        return s == null ? null : s.getCommandPrefixes();
+    }
+
+    /**
+     * Set the command prefixes of a guild. The change is persisted with the next batch.
+     *
+     * @param commandPrefixes new prefixes, or null to use the default prefix
+     */
+    public void setCommandPrefixes(long guildId, List<String> commandPrefixes) {
+        settings.compute(guildId, (id, s) -> {
+            GuildSettings updated = s == null ? new GuildSettings(id) : new GuildSettings(s);
+            updated.setCommandPrefixes(commandPrefixes == null ? null : new ArrayList<>(commandPrefixes));
+            return updated;
+        });
+        dirty.add(guildId);
+    }
+
+    /**
+     * Write every changed guild to the store in batches. A failed batch does not stop the others,
+     * its guilds stay changed and are written with the next flush.
+     *
+     * @return completes once every batch was written, or errors if any batch failed
+     */
+    public Mono<Void> flush() {
+        if (dirty.isEmpty()) {
+            return Mono.empty();
+        }
+
+        // Changes made while a batch is saved mark the guild again, so it is written next time
+        List<Collection<GuildSettings>> batches = new ArrayList<>();
+        List<GuildSettings> batch = new ArrayList<>(batchSize);
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext()) {
+            Long id = it.next();
+            it.remove();
+            GuildSettings s = settings.get(id);
+            if (s == null) {
+                continue;
+            }
+            batch.add(s);
+            if (batch.size() >= batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        return Flux.fromIterable(batches)
+                .concatMap(b -> store.saveAll(b).onErrorResume(e -> {
+                    // Retry the failed batch with the next flush
+                    b.forEach(s -> dirty.add(s.getId()));
+                    errors.add(e);
+                    return Mono.empty();
+                }))
+                .then(Mono.defer(() -> {
+                    if (errors.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    IllegalStateException e = new IllegalStateException(errors.size() + " of " + batches.size()
+                            + " guild settings batches failed, they are retried with the next flush", errors.get(0));
+                    errors.subList(1, errors.size()).forEach(e::addSuppressed);
+                    return Mono.error(e);
+                }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTask.dispose();
+        try {
+            flush().block(Duration.ofSeconds(30));
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to save guild settings on shutdown", e);
+        }
+    }
+}
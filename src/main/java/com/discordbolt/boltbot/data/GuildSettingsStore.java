@@ -0,0 +1,22 @@
+package com.discordbolt.boltbot.data;
+
+import java.util.Collection;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Backing store of {@link GuildSettings}. The {@link GuildSettingsRepository} only talks to the
+ * store to load everything at startup and to persist batches of changed settings.
+ */
+public interface GuildSettingsStore {
+
+    /**
+     * Stream the settings of every guild
+     */
+    Flux<GuildSettings> loadAll();
+
+    /**
+     * Insert or replace a batch of guild settings
+     */
+    Mono<Void> saveAll(Collection<GuildSettings> settings);
+}
@@ -0,0 +1,62 @@
+package com.discordbolt.boltbot.data;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * MongoDB backed {@link GuildSettingsStore}. Settings are streamed with large cursor batches and
+ * written with a single unordered bulk write per batch.
+ */
+@Component("MongoGuildSettingsStore")
+@Profile("prod")
+public class MongoGuildSettingsStore implements GuildSettingsStore {
+
+    private static final int CURSOR_BATCH_SIZE = 5_000;
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private ReactiveMongoOperations mongo;
+
+    @Autowired
+    public MongoGuildSettingsStore(ReactiveMongoOperations mongo) {
+        this.mongo = mongo;
+    }
+
+    @Override
+    public Flux<GuildSettings> loadAll() {
+        return mongo.find(new Query().cursorBatchSize(CURSOR_BATCH_SIZE), GuildSettings.class);
+    }
+
+    @Override
+    public Mono<Void> saveAll(Collection<GuildSettings> settings) {
+        if (settings.isEmpty()) {
+            return Mono.empty();
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>(settings.size());
+        for (GuildSettings s : settings) {
+            Document document = new Document();
+            mongo.getConverter().write(s, document);
+            writes.add(new ReplaceOneModel<>(eq("_id", s.getId()), document, UPSERT));
+        }
+
+        MongoCollection<Document> collection = mongo.getCollection(mongo.getCollectionName(GuildSettings.class));
+        return Mono.from(collection.bulkWrite(writes, UNORDERED)).then();
+    }
+}
@@ -3,8 +3,10 @@ package com.discordbolt.boltbot.discord.api;
 import com.discordbolt.boltbot.discord.api.commands.BotCommand;
 import com.discordbolt.boltbot.discord.api.commands.CommandContext;
 import com.discordbolt.boltbot.discord.util.BeanUtil;
+import com.discordbolt.boltbot.discord.util.ClassIndex;
 import discord4j.common.GitProperties;
 import discord4j.core.DiscordClient;
+import discord4j.core.object.entity.Message;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,49 +15,177 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.awt.*;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service("BoltService")
 @Profile("prod")
-@DependsOn("BeanUtil") //This ensures BeanUtil is setup before it is used by Bot Modules
+@DependsOn({"BeanUtil", "CommandBean"}) //This ensures BeanUtil is setup before it is used by Bot Modules, and commands are handled before the shards connect
 public class BoltService {
 
     public static final String PACKAGE_PREFIX = "com.discordbolt.boltbot";
     private static final Logger LOGGER = LoggerFactory.getLogger(BoltService.class);
+    // Log the startup report even if a shard never becomes ready
+    private static final Duration LOGIN_REPORT_TIMEOUT = Duration.ofMinutes(5);
 
-    private DiscordClient client;
+    private List<DiscordClient> clients;
     private String version, commit;
+    private StartupReport startupReport;
     private List<BotModule> botModules;
 
     @Autowired
-    public BoltService(DiscordConfiguration config, @Value("${boltbot.version:SNAPSHOT}") String version, @Value("${boltbot.commit:undefined}") String commit) {
+    public BoltService(DiscordConfiguration config, StartupReport startupReport, @Value("${boltbot.version:SNAPSHOT}") String version, @Value("${boltbot.commit:undefined}") String commit) {
         LOGGER.info("Starting BoltBot version {}", version);
-        this.client = config.getClient();
+        this.clients = config.getClients();
         this.version = version;
         this.commit = commit;
-        initModules();
-        config.login();
+        this.startupReport = startupReport;
+        // The shards connect while the modules are initialized
+        Mono<Void> ready = config.login();
+        startupReport.time("modules", this::initModules);
+        ready.timeout(LOGIN_REPORT_TIMEOUT)
+                .doOnError(e -> LOGGER.warn("Not every shard was ready after {}", LOGIN_REPORT_TIMEOUT))
+                .onErrorResume(e -> Mono.empty())
+                .doOnTerminate(startupReport::log)
+                .subscribe();
     }
 
     private void initModules() {
         LOGGER.info("Registering Bolt Modules");
 
-        botModules = new Reflections(PACKAGE_PREFIX).getSubTypesOf(BotModule.class).stream().map(c -> {
+        Set<Class<? extends BotModule>> moduleClasses = startupReport.time("scanModules", this::findModules);
+        Map<Class<? extends BotModule>, BotModule> modules = new LinkedHashMap<>();
+        for (Class<? extends BotModule> c : moduleClasses) {
             try {
-                LOGGER.info("Initializing Module '{}'", c.getName());
-                BotModule m = c.getDeclaredConstructor().newInstance();
-                m.initialize(client);
-                return Optional.of(m);
+                modules.put(c, c.getDeclaredConstructor().newInstance());
             } catch (Exception e) {
-                LOGGER.error("Unable to initialize module '" + c.getName() + "'", e);
-                return Optional.<BotModule>empty();
+                LOGGER.error("Unable to instantiate module '" + c.getName() + "'", e);
             }
-        }).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList());
+        }
+
+        // Every module is initialized as soon as its dependencies are
+        Scheduler scheduler = Schedulers.newElastic("module-init");
+        try {
+            Map<Class<? extends BotModule>, Mono<Boolean>> initializations = new HashMap<>();
+            Set<Class<? extends BotModule>> initialized = ConcurrentHashMap.newKeySet();
+            List<Mono<Boolean>> all = new ArrayList<>();
+            for (BotModule module : modules.values()) {
+                all.add(schedule(module, modules, initializations, new HashSet<>(), scheduler)
+                        .doOnNext(ok -> {
+                            if (ok) {
+                                initialized.add(module.getClass());
+                            }
+                        }));
+            }
+            Flux.merge(all).blockLast();
+            botModules = modules.values().stream().filter(m -> initialized.contains(m.getClass())).collect(Collectors.toList());
+        } finally {
+            scheduler.dispose();
+        }
+        LOGGER.info("Initialized {} of {} modules", botModules.size(), moduleClasses.size());
+    }
+
+    /**
+     * Schedule the initialization of a module after the initialization of its dependencies
+     *
+     * @param visiting modules whose dependencies are being scheduled, to detect cycles
+     * @return Mono emitting whether the module was initialized
+     */
+    private Mono<Boolean> schedule(BotModule module, Map<Class<? extends BotModule>, BotModule> modules, Map<Class<? extends BotModule>, Mono<Boolean>> initializations, Set<Class<? extends BotModule>> visiting, Scheduler scheduler) {
+        Mono<Boolean> existing = initializations.get(module.getClass());
+        if (existing != null) {
+            return existing;
+        }
+        if (!visiting.add(module.getClass())) {
+            LOGGER.error("Module '{}' is part of a dependency cycle", module.getClass().getName());
+            return Mono.just(false);
+        }
+
+        List<Mono<Boolean>> dependencies = new ArrayList<>();
+        for (Class<? extends BotModule> dependency : module.getDependencies()) {
+            BotModule dependencyModule = modules.get(dependency);
+            if (dependencyModule == null) {
+                LOGGER.error("Module '{}' depends on '{}', which is not available", module.getClass().getName(), dependency.getName());
+                dependencies.add(Mono.just(false));
+            } else {
+                dependencies.add(schedule(dependencyModule, modules, initializations, visiting, scheduler));
+            }
+        }
+        visiting.remove(module.getClass());
+
+        Mono<Boolean> initialization = Flux.merge(dependencies)
+                .all(Boolean::booleanValue)
+                .flatMap(ready -> {
+                    if (!ready) {
+                        LOGGER.error("Not initializing module '{}', a dependency was not initialized", module.getClass().getName());
+                        return Mono.just(false);
+                    }
+                    return Mono.fromCallable(() -> initialize(module)).subscribeOn(scheduler);
+                })
+                .cache();
+        initializations.put(module.getClass(), initialization);
+        return initialization;
+    }
+
+    private boolean initialize(BotModule module) {
+        String name = module.getClass().getName();
+        long start = System.nanoTime();
+        try {
+            LOGGER.info("Initializing Module '{}'", name);
+            for (DiscordClient client : clients) {
+                module.initialize(client);
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Unable to initialize module '" + name + "'", e);
+            return false;
+        } finally {
+            startupReport.record("module " + name, start, System.nanoTime());
+        }
+    }
+
+    /**
+     * Find all BotModule implementations. The index generated at compile time is used when present,
+     * which holds every module as the annotation processor rejects modules missing
+     * {@link IndexedModule}, otherwise the classpath is scanned.
+     */
+    private Set<Class<? extends BotModule>> findModules() {
+        long start = System.nanoTime();
+        Optional<List<String>> index = ClassIndex.read(ClassIndex.MODULE_INDEX, PACKAGE_PREFIX);
+        if (index.isEmpty()) {
+            Set<Class<? extends BotModule>> modules = new Reflections(PACKAGE_PREFIX).getSubTypesOf(BotModule.class);
+            LOGGER.info("No module index found, scanned classpath for {} modules in {} ms", modules.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return modules;
+        }
+
+        Set<Class<? extends BotModule>> modules = new LinkedHashSet<>();
+        for (String entry : index.get()) {
+            try {
+                modules.add(Class.forName(entry, false, BoltService.class.getClassLoader()).asSubclass(BotModule.class));
+            } catch (ClassNotFoundException | ClassCastException e) {
+                LOGGER.error("Unable to load indexed module '" + entry + "'", e);
+            }
+        }
+        LOGGER.info("Loaded {} modules from the module index in {} ms", modules.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return modules;
     }
 
     public List<BotModule> getBotModules() {
@@ -71,13 +201,13 @@ public class BoltService {
     }
 
     @BotCommand(command = "ping", description = "Check if the bot is online and available", usage = "ping", module = "misc")
-    public static void ping(CommandContext context) {
-        context.replyWith("Pong!").subscribe();
+    public static Mono<Message> ping(CommandContext context) {
+        return context.replyWith("Pong!");
     }
 
-    @BotCommand(command = "version", description = "Version information", usage = "version", module = "misc", aliases = "v")
-    public static void version(CommandContext context) {
-        context.replyWith(spec -> {
+    @BotCommand(command = "version", description = "Version information", usage = "version", module = "misc", aliases = "v", cacheTtl = 3600)
+    public static Mono<Message> version(CommandContext context) {
+        return context.replyWith(spec -> {
             String boltVersion = BeanUtil.getBean(BoltService.class).getVersion();
             String boltCommit = BeanUtil.getBean(BoltService.class).getCommit();
             String d4jVersion = GitProperties.getProperties().getProperty(GitProperties.APPLICATION_VERSION);
@@ -86,6 +216,6 @@ public class BoltService {
             spec.addField("Version", boltVersion, true);
             spec.addField("Commit", "[" + boltCommit + "](https://github.com/DiscordBolt/BoltBot/commit/" + boltCommit + ")", true);
             spec.addField("D4J Version", "[" + d4jVersion + "](https://github.com/Discord4J/Discord4J/releases/tag/" + d4jVersion + ")", true);
-        }).subscribe();
+        });
     }
 }
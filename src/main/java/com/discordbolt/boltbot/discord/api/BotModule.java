@@ -1,8 +1,37 @@
 package com.discordbolt.boltbot.discord.api;
 
 import discord4j.core.DiscordClient;
+import java.util.Collection;
+import java.util.Collections;
 
+/**
+ * A module of the bot, instantiated when the bot starts.
+ * <p>
+ * Implementations must be annotated with {@link IndexedModule}. The bot only instantiates the
+ * modules of the index written at compile time, and the annotation processor fails the build on an
+ * implementation without it. Modules written before the index existed only need the annotation
+ * added.
+ */
 public interface BotModule {
 
+    /**
+     * Initialize the module for a shard. A module is instantiated once and initialized once for
+     * the client of every shard.
+     *
+     * <p>Modules are initialized concurrently with each other and while the shards log in.
+     * Subscribe to the event dispatcher before doing any slow work, so no events are missed.
+     *
+     * @param client DiscordClient of one shard
+     */
     void initialize(DiscordClient client);
-}
\ No newline at end of file
+
+    /**
+     * Modules which must be initialized before this one. The module is not initialized if one of
+     * them is missing or fails to initialize.
+     *
+     * @return classes of the modules this module depends on
+     */
+    default Collection<Class<? extends BotModule>> getDependencies() {
+        return Collections.emptyList();
+    }
+}
@@ -1,13 +1,19 @@
 package com.discordbolt.boltbot.discord.api;
 
+import com.discordbolt.boltbot.data.GuildSettings;
+import com.discordbolt.boltbot.data.GuildSettingsRepository;
 import com.discordbolt.boltbot.discord.api.commands.CommandManager;
 import com.discordbolt.boltbot.discord.api.commands.CustomCommand;
 import discord4j.core.DiscordClient;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
 @Component("CommandBean")
 @Profile("prod")
@@ -15,31 +21,57 @@ public class CommandBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CommandBean.class);
 
-    private DiscordClient client;
+    private static final Duration SETTINGS_LOAD_TIMEOUT = Duration.ofSeconds(60);
+
+    private DiscordConfiguration discordConfiguration;
+    private GuildSettingsRepository guildSettings;
+    private CommandLaneProperties laneProperties;
+    private StartupReport startupReport;
     private CommandManager commandManager;
 
     @Autowired
-    public CommandBean(DiscordClient client) {
-        this.client = client;
+    public CommandBean(DiscordConfiguration discordConfiguration, GuildSettingsRepository guildSettings, CommandLaneProperties laneProperties, StartupReport startupReport) {
+        this.discordConfiguration = discordConfiguration;
+        this.guildSettings = guildSettings;
+        this.laneProperties = laneProperties;
+        this.startupReport = startupReport;
         initCommands();
     }
 
     private void initCommands() {
-        // Initialize command manager (scans and registers commands with @BotCommand)
-        commandManager = new CommandManager(client, BoltService.PACKAGE_PREFIX);
-        // Restore saved per-guild command prefixes
-        /*BeanUtil.getBean(GuildRepository.class)
-                .findAll()
-                .filter(data -> data.getCommandPrefix() != null)
-                .subscribe(data -> commandManager.setCommandPrefix(data.getId(), data.getCommandPrefix()));
-        */
-        commandManager.onCommandExecution(context -> {
-            // TODO store stats about each command execution.
-            // Neo4J https://projects.spring.io/spring-data-neo4j/
-            //
-            // https://medium.com/@joeclever/using-multiple-datasources-with-spring-boot-and-spring-data-6430b00c02e7
-            // http://www.baeldung.com/spring-data-jpa-multiple-databases
+        // Find the commands with @BotCommand
+        List<CustomCommand> commands = startupReport.time("scanCommands", () -> CommandManager.loadCommands(BoltService.PACKAGE_PREFIX));
+        startupReport.time("registerCommands", () -> {
+            commandManager = new CommandManager(commands);
+            // Give the configured modules their own execution lanes
+            laneProperties.getLanes().forEach((name, lane) ->
+                    commandManager.configureLane(name, lane.getMaxConcurrency(), lane.getQueueCapacity(), lane.getModules().toArray(new String[0])));
+        });
+        // Restore saved per-guild command prefixes, all at once
+        startupReport.time("restorePrefixes", () -> {
+            guildSettings.load()
+                    .filter(data -> data.getCommandPrefixes() != null && isRestorable(data))
+                    .collectMap(GuildSettings::getId, GuildSettings::getCommandPrefixes)
+                    .timeout(SETTINGS_LOAD_TIMEOUT)
+                    .onErrorResume(e -> {
+                        LOGGER.error("Unable to restore guild command prefixes", e);
+                        return Mono.empty();
+                    })
+                    .blockOptional()
+                    .ifPresent(commandManager::setCommandPrefixes);
         });
+        // Persist every later prefix change, however it is made
+        commandManager.onCommandPrefixChange(changes -> changes.forEach((guildId, prefixes) ->
+                guildSettings.setCommandPrefixes(guildId, prefixes.isEmpty() ? null : prefixes)));
+        // Handle commands of every shard with the same manager
+        List<DiscordClient> clients = discordConfiguration.getClients();
+        for (int shard = 0; shard < clients.size(); shard++) {
+            commandManager.attach(clients.get(shard), shard, clients.size());
+        }
+    }
+
+    public CommandManager getCommandManager() {
+        return commandManager;
     }
 
     public void registerCommand(CustomCommand command) {
@@ -53,6 +85,29 @@ public class CommandBean {
     }
 
     public void setCommandPrefix(long guildId, String newPrefix) {
-        commandManager.setCommandPrefix(guildId, newPrefix);
+        setCommandPrefixes(guildId, Collections.singletonList(newPrefix));
+    }
+
+    /**
+     * Set the command prefixes of a guild. The change is persisted like every prefix change made
+     * through the CommandManager.
+     *
+     * @param newPrefixes new prefixes, the first is the one shown in help. Empty to restore the
+     * default prefix.
+     */
+    public void setCommandPrefixes(long guildId, List<String> newPrefixes) {
+        commandManager.setCommandPrefixes(guildId, newPrefixes);
+    }
+
+    /**
+     * Saved settings are not trusted to be valid, a guild with unusable prefixes keeps the default
+     * one instead of keeping the bot from starting
+     */
+    private static boolean isRestorable(GuildSettings data) {
+        if (data.getId() != 0 && data.getCommandPrefixes().stream().allMatch(prefix -> prefix != null && !prefix.isEmpty())) {
+            return true;
+        }
+        LOGGER.warn("Ignoring invalid command prefixes {} of guild {}", data.getCommandPrefixes(), data.getId());
+        return false;
     }
 }
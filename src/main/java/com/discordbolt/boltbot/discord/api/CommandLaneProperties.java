@@ -0,0 +1,68 @@
+package com.discordbolt.boltbot.discord.api;
+
+import com.discordbolt.boltbot.discord.api.commands.CommandManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Execution lanes of the Command API, configured with
+ * <pre>
+ * boltbot.commands.lanes.&lt;name&gt;.modules=music,youtube
+ * boltbot.commands.lanes.&lt;name&gt;.max-concurrency=4
+ * boltbot.commands.lanes.&lt;name&gt;.queue-capacity=32
+ * </pre>
+ * Modules without a lane run in the "default" lane, which can be configured the same way. Lanes
+ * default to {@value CommandManager#DEFAULT_LANE_CONCURRENCY} concurrent commands and a queue of
+ * {@value CommandManager#DEFAULT_LANE_QUEUE_CAPACITY}.
+ */
+@Component
+@Profile("prod")
+@ConfigurationProperties("boltbot.commands")
+public class CommandLaneProperties {
+
+    private Map<String, Lane> lanes = new LinkedHashMap<>();
+
+    public Map<String, Lane> getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(Map<String, Lane> lanes) {
+        this.lanes = lanes;
+    }
+
+    public static class Lane {
+
+        private List<String> modules = new ArrayList<>();
+        private int maxConcurrency = CommandManager.DEFAULT_LANE_CONCURRENCY;
+        private int queueCapacity = CommandManager.DEFAULT_LANE_QUEUE_CAPACITY;
+
+        public List<String> getModules() {
+            return modules;
+        }
+
+        public void setModules(List<String> modules) {
+            this.modules = modules;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
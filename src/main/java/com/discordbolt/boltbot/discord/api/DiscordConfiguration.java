@@ -1,34 +1,159 @@
 package com.discordbolt.boltbot.discord.api;
 
+import discord4j.common.JacksonResourceProvider;
+import discord4j.common.SimpleBucket;
 import discord4j.core.DiscordClient;
 import discord4j.core.DiscordClientBuilder;
+import discord4j.core.event.domain.lifecycle.ReadyEvent;
+import discord4j.core.shard.ShardAwareStoreService;
+import discord4j.core.shard.ShardingJdkStoreRegistry;
+import discord4j.core.shard.ShardingStoreRegistry;
+import discord4j.gateway.PayloadTransformer;
+import discord4j.gateway.RateLimiterTransformer;
+import discord4j.rest.RestClient;
+import discord4j.rest.http.ExchangeStrategies;
+import discord4j.rest.http.client.DiscordWebClient;
+import discord4j.rest.json.response.GatewayResponse;
+import discord4j.rest.request.DefaultRouterFactory;
+import discord4j.rest.request.Router;
+import discord4j.rest.request.RouterFactory;
+import discord4j.rest.request.SingleRouterFactory;
+import discord4j.store.jdk.JdkStoreService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
+/**
+ * Builds one DiscordClient per gateway shard. Set {@code discord.shards} to a shard count, or to
+ * {@code auto} to use the count Discord recommends for the bot. All shards share one REST router,
+ * so REST rate limits are tracked once for the whole bot, and one registry of unbounded entity
+ * stores, so every shard sees all cached guilds. Bounded stores belong to their shard. Which
+ * entities are cached is configured with {@link EntityStoreProperties}.
+ * <p>
+ * Building a DiscordClient turns on Reactor's operator debugging for the whole JVM, which
+ * captures a stack trace for every operator assembled, several per message. It is turned off
+ * again unless {@code discord.operator-debug} is true.
+ */
 @Configuration("DiscordConfiguration")
 @Profile("prod")
 public class DiscordConfiguration {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DiscordConfiguration.class);
 
-    private DiscordClient client;
+    private static final String AUTO_SHARDS = "auto";
+    // Discord allows one IDENTIFY every 5 seconds, leave some room
+    private static final Duration IDENTIFY_INTERVAL = Duration.ofSeconds(6);
+    private static final Duration SHARD_COUNT_TIMEOUT = Duration.ofSeconds(30);
 
-    public DiscordConfiguration(@Value("${discord.token}") String token) {
+    private List<DiscordClient> clients = new ArrayList<>();
+    private EntityStores entityStores;
+    private StartupReport startupReport;
+
+    public DiscordConfiguration(@Value("${discord.token}") String token, @Value("${discord.shards:1}") String shards,
+                                @Value("${discord.operator-debug:false}") boolean operatorDebug, EntityStoreProperties storeProperties, StartupReport startupReport) {
         LOGGER.info("Starting configuration of Discord Client");
-        client = new DiscordClientBuilder(token).build();
+        this.startupReport = startupReport;
+        long start = System.nanoTime();
+        entityStores = new EntityStores(new HashSet<>(storeProperties.getEntities()), storeProperties.getMaxEntries());
+        LOGGER.info("Caching {} with at most {} entities", storeProperties.getEntities(), storeProperties.getMaxEntries());
+        JacksonResourceProvider jackson = new JacksonResourceProvider();
+        DiscordWebClient webClient = new DiscordWebClient(HttpClient.create().compress(true), ExchangeStrategies.jackson(jackson.getObjectMapper()), token);
+        Router router = new DefaultRouterFactory().getRouter(webClient);
+        RouterFactory routerFactory = new SingleRouterFactory(router);
+
+        int shardCount = AUTO_SHARDS.equalsIgnoreCase(shards) ? getRecommendedShardCount(new RestClient(router)) : Integer.parseInt(shards);
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("discord.shards must be at least 1 or '" + AUTO_SHARDS + "'");
+        }
+
+        // Shards log in one at a time as the shared limiter lets their IDENTIFY through
+        PayloadTransformer identifyLimiter = new RateLimiterTransformer(new SimpleBucket(1, IDENTIFY_INTERVAL));
+        ShardingStoreRegistry storeRegistry = new ShardingJdkStoreRegistry();
+        for (int shard = 0; shard < shardCount; shard++) {
+            clients.add(new DiscordClientBuilder(token)
+                    .setShardIndex(shard)
+                    .setShardCount(shardCount)
+                    .setJacksonResourceProvider(jackson)
+                    .setRouterFactory(routerFactory)
+                    .setIdentifyLimiter(identifyLimiter)
+                    .setStoreService(entityStores.forShard(shardCount, new ShardAwareStoreService(storeRegistry, new JdkStoreService())))
+                    .build());
+        }
+        if (operatorDebug) {
+            LOGGER.info("Reactor operator debugging is on, every operator assembled captures a stack trace");
+        } else {
+            Hooks.resetOnOperatorDebug();
+        }
+        LOGGER.info("Configured {} shard(s)", shardCount);
+        startupReport.record("configureShards", start, System.nanoTime());
+    }
+
+    private static int getRecommendedShardCount(RestClient restClient) {
+        Integer shards = restClient.getGatewayService().getGatewayBot()
+                .map(GatewayResponse::getShards)
+                .block(SHARD_COUNT_TIMEOUT);
+        LOGGER.info("Discord recommends {} shard(s)", shards);
+        return shards == null ? 1 : shards;
     }
 
+    /**
+     * Get the client of the first shard. Beans written for a bot with a single client keep
+     * working, but only see the guilds of that shard, use {@link #getClients()} to reach every
+     * shard.
+     */
     @Bean
     public DiscordClient getClient() {
-        return client;
+        return clients.get(0);
+    }
+
+    /**
+     * Get the clients of all shards, ordered by shard index
+     */
+    public List<DiscordClient> getClients() {
+        return Collections.unmodifiableList(clients);
+    }
+
+    /**
+     * Get the stores of cached Discord entities of all shards
+     */
+    public EntityStores getEntityStores() {
+        return entityStores;
     }
 
-    protected void login() {
-        LOGGER.info("Logging into Discord...");
-        client.login().subscribe(); // In most cases .block() should be used to keep the thread alive. (Spring keeps non-daemon threads running)
+    /**
+     * Log every shard into Discord without waiting for them to connect
+     *
+     * @return Mono which completes once every shard has received READY
+     */
+    protected Mono<Void> login() {
+        LOGGER.info("Logging into Discord with {} shard(s)...", clients.size());
+        long start = System.nanoTime();
+        // Subscribe to READY before the shards connect, so none is missed
+        Mono<Void> ready = Flux.range(0, clients.size())
+                .flatMap(shard -> clients.get(shard).getEventDispatcher().on(ReadyEvent.class)
+                        .next()
+                        .doOnNext(event -> startupReport.record("login shard " + shard, start, System.nanoTime())))
+                .then()
+                .doOnSuccess(v -> startupReport.record("login", start, System.nanoTime()))
+                .cache();
+        ready.subscribe();
+        // In most cases .block() should be used to keep the thread alive. (Spring keeps non-daemon threads running)
+        Flux.range(0, clients.size())
+                .flatMap(shard -> clients.get(shard).login()
+                        .doOnError(e -> LOGGER.error("Shard " + shard + " disconnected", e)))
+                .subscribe();
+        return ready;
     }
 }
@@ -0,0 +1,82 @@
+package com.discordbolt.boltbot.discord.api;
+
+import com.discordbolt.boltbot.discord.api.EntityStores.EntityType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Discord entities cached in memory, configured with
+ * <pre>
+ * discord.store.entities=guild,channel,role,member,user
+ * discord.store.max-members=100000
+ * discord.store.max-users=100000
+ * discord.store.max-messages=1000
+ * </pre>
+ * The defaults cache what the Command API needs. Members are resolved together with their user,
+ * so caching members without users gains nothing. A maximum of 0 leaves the type unbounded.
+ */
+@Component
+@Profile("prod")
+@ConfigurationProperties("discord.store")
+public class EntityStoreProperties {
+
+    private List<EntityType> entities = new ArrayList<>(Arrays.asList(EntityType.GUILD, EntityType.CHANNEL, EntityType.ROLE, EntityType.MEMBER, EntityType.USER));
+    private int maxMembers = 100_000;
+    private int maxUsers = 100_000;
+    private int maxMessages = 1000;
+
+    public List<EntityType> getEntities() {
+        return entities;
+    }
+
+    public void setEntities(List<EntityType> entities) {
+        this.entities = entities;
+    }
+
+    public int getMaxMembers() {
+        return maxMembers;
+    }
+
+    public void setMaxMembers(int maxMembers) {
+        this.maxMembers = maxMembers;
+    }
+
+    public int getMaxUsers() {
+        return maxUsers;
+    }
+
+    public void setMaxUsers(int maxUsers) {
+        this.maxUsers = maxUsers;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Maximum number of cached entities per bounded type
+     */
+    Map<EntityType, Integer> getMaxEntries() {
+        Map<EntityType, Integer> maxEntries = new EnumMap<>(EntityType.class);
+        if (maxMembers > 0) {
+            maxEntries.put(EntityType.MEMBER, maxMembers);
+        }
+        if (maxUsers > 0) {
+            maxEntries.put(EntityType.USER, maxUsers);
+        }
+        if (maxMessages > 0) {
+            maxEntries.put(EntityType.MESSAGE, maxMessages);
+        }
+        return maxEntries;
+    }
+}
@@ -0,0 +1,189 @@
+package com.discordbolt.boltbot.discord.api;
+
+import com.discordbolt.boltbot.discord.util.BoundedStore;
+import discord4j.core.object.data.stored.ChannelBean;
+import discord4j.core.object.data.stored.GuildBean;
+import discord4j.core.object.data.stored.GuildEmojiBean;
+import discord4j.core.object.data.stored.MemberBean;
+import discord4j.core.object.data.stored.MessageBean;
+import discord4j.core.object.data.stored.PresenceBean;
+import discord4j.core.object.data.stored.RoleBean;
+import discord4j.core.object.data.stored.UserBean;
+import discord4j.core.object.data.stored.VoiceStateBean;
+import discord4j.store.api.Store;
+import discord4j.store.api.noop.NoOpStore;
+import discord4j.store.api.primitive.ForwardingStore;
+import discord4j.store.api.primitive.LongObjStore;
+import discord4j.store.api.service.StoreService;
+import discord4j.store.api.util.StoreContext;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decides which Discord4J entities are cached and how many. Entity types which are not cached are
+ * never stored, members, users and messages are kept in {@link BoundedStore}s, everything else
+ * goes to the store service of the shard. Every shard has bounded stores of its own, sharing the
+ * configured maximum equally, so a shard invalidating its stores on a reconnect only clears its
+ * own entities.
+ * <p>
+ * A bounded store forgets entities to stay within its maximum, so lists read from it, such as
+ * {@code Guild#getMembers()}, may be incomplete. {@link #isComplete(EntityType)} tells whether
+ * that happened.
+ */
+public class EntityStores {
+
+    private static final Duration COUNT_TIMEOUT = Duration.ofSeconds(5);
+
+    public enum EntityType {
+        GUILD(GuildBean.class),
+        CHANNEL(ChannelBean.class),
+        ROLE(RoleBean.class),
+        MEMBER(MemberBean.class),
+        USER(UserBean.class),
+        MESSAGE(MessageBean.class),
+        PRESENCE(PresenceBean.class),
+        VOICE_STATE(VoiceStateBean.class),
+        EMOJI(GuildEmojiBean.class);
+
+        private final Class<?> beanClass;
+
+        EntityType(Class<?> beanClass) {
+            this.beanClass = beanClass;
+        }
+
+        static EntityType of(Class<?> beanClass) {
+            for (EntityType type : values()) {
+                if (type.beanClass == beanClass) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Set<EntityType> cached;
+    private final Map<EntityType, Integer> maxEntries = new EnumMap<>(EntityType.class);
+    // The stores of every shard per entity type, for metrics only
+    private final Map<EntityType, List<Store<?, ?>>> stores = new ConcurrentHashMap<>();
+
+    /**
+     * @param cached entity types to cache, everything else is fetched from the REST API when
+     * needed
+     * @param maxEntries maximum number of members, users or messages to cache, types without a
+     * maximum are unbounded
+     */
+    public EntityStores(Set<EntityType> cached, Map<EntityType, Integer> maxEntries) {
+        this.cached = cached.isEmpty() ? EnumSet.noneOf(EntityType.class) : EnumSet.copyOf(cached);
+        this.maxEntries.putAll(maxEntries);
+    }
+
+    /**
+     * Wrap the store service of a shard
+     *
+     * @param shardCount number of shards sharing the maximum number of entities
+     * @param shardStores store service entities which are cached without bounds are kept in
+     */
+    public StoreService forShard(int shardCount, StoreService shardStores) {
+        return new ShardStoreService(shardCount, shardStores);
+    }
+
+    /**
+     * Does every store of an entity type still hold every entity it was given, that is, it is
+     * unbounded or has never evicted one
+     */
+    public boolean isComplete(EntityType type) {
+        return stores.getOrDefault(type, Collections.emptyList()).stream()
+                .noneMatch(store -> store instanceof BoundedStore && ((BoundedStore<?, ?>) store).getEvictions() > 0);
+    }
+
+    /**
+     * Size of the store of every entity type, keyed by type
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (EntityType type : EntityType.values()) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("cached", cached.contains(type));
+            List<Store<?, ?>> typeStores = stores.getOrDefault(type, Collections.emptyList());
+            if (typeStores.isEmpty()) {
+                metrics.put("size", 0);
+            } else if (maxEntries.containsKey(type)) {
+                metrics.put("size", typeStores.stream().mapToLong(store -> ((BoundedStore<?, ?>) store).size()).sum());
+                metrics.put("maxEntries", typeStores.stream().mapToLong(store -> ((BoundedStore<?, ?>) store).getMaxEntries()).sum());
+                metrics.put("evictions", typeStores.stream().mapToLong(store -> ((BoundedStore<?, ?>) store).getEvictions()).sum());
+            } else {
+                // The unbounded stores of all shards are views of one store
+                metrics.put("size", typeStores.get(0).count().block(COUNT_TIMEOUT));
+            }
+            snapshot.put(type.name().toLowerCase(), metrics);
+        }
+        return snapshot;
+    }
+
+    private <K extends Comparable<K>, V extends Serializable> Store<K, V> provide(StoreService shardStores, int shardCount, Class<K> keyClass, Class<V> valueClass) {
+        EntityType type = EntityType.of(valueClass);
+        if (type == null) {
+            return shardStores.provideGenericStore(keyClass, valueClass);
+        }
+        if (!cached.contains(type)) {
+            return new NoOpStore<>();
+        }
+        Integer max = maxEntries.get(type);
+        Store<K, V> store = max != null
+                ? new BoundedStore<>(Math.max(1, (max + shardCount - 1) / shardCount))
+                : shardStores.provideGenericStore(keyClass, valueClass);
+        stores.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>()).add(store);
+        return store;
+    }
+
+    private class ShardStoreService implements StoreService {
+
+        private final int shardCount;
+        private final StoreService shardStores;
+
+        private ShardStoreService(int shardCount, StoreService shardStores) {
+            this.shardCount = shardCount;
+            this.shardStores = shardStores;
+        }
+
+        @Override
+        public boolean hasGenericStores() {
+            return true;
+        }
+
+        @Override
+        public <K extends Comparable<K>, V extends Serializable> Store<K, V> provideGenericStore(Class<K> keyClass, Class<V> valueClass) {
+            return provide(shardStores, shardCount, keyClass, valueClass);
+        }
+
+        @Override
+        public boolean hasLongObjStores() {
+            return true;
+        }
+
+        @Override
+        public <V extends Serializable> LongObjStore<V> provideLongObjStore(Class<V> valueClass) {
+            return new ForwardingStore<>(provide(shardStores, shardCount, Long.class, valueClass));
+        }
+
+        @Override
+        public void init(StoreContext context) {
+            shardStores.init(context);
+        }
+
+        @Override
+        public Mono<Void> dispose() {
+            return shardStores.dispose();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.discordbolt.boltbot.discord.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Adds a {@link BotModule} implementation to the module index written at compile time. Required on
+ * every concrete implementation, the annotation processor fails the build on a module without it.
+ * The classpath is only scanned for modules when the bot was compiled without the processor.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IndexedModule {
+
+}
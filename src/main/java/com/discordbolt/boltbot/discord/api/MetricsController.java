@@ -0,0 +1,42 @@
+package com.discordbolt.boltbot.discord.api;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Publishes the command API metrics, including per command and per stage latency percentiles, the
+ * size of the entity store per entity type and the time spent in each phase of startup
+ */
+@RestController
+@Profile("prod")
+public class MetricsController {
+
+    private CommandBean commandBean;
+    private DiscordConfiguration discordConfiguration;
+    private StartupReport startupReport;
+
+    @Autowired
+    public MetricsController(CommandBean commandBean, DiscordConfiguration discordConfiguration, StartupReport startupReport) {
+        this.commandBean = commandBean;
+        this.discordConfiguration = discordConfiguration;
+        this.startupReport = startupReport;
+    }
+
+    @GetMapping("/metrics/commands")
+    public Map<String, Object> commandMetrics() {
+        return commandBean.getCommandManager().getMetrics();
+    }
+
+    @GetMapping("/metrics/store")
+    public Map<String, Object> storeMetrics() {
+        return discordConfiguration.getEntityStores().snapshot();
+    }
+
+    @GetMapping("/metrics/startup")
+    public Map<String, Object> startupMetrics() {
+        return startupReport.snapshot();
+    }
+}
@@ -0,0 +1,102 @@
+package com.discordbolt.boltbot.discord.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Time spent in each phase of starting the bot: classpath scanning, command registration, the
+ * {@code initialize} of every module and the login of every shard. Phases may overlap, modules
+ * are initialized concurrently and while the shards log in. The report is logged once the bot is
+ * up and served at {@code /metrics/startup}.
+ */
+@Component("StartupReport")
+@Profile("prod")
+public class StartupReport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupReport.class);
+
+    private final long start = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Run some work and record how long it took
+     *
+     * @param phase name of the phase
+     * @param work work of the phase
+     * @return result of the work
+     */
+    public <T> T time(String phase, Supplier<T> work) {
+        long phaseStart = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(phase, phaseStart, System.nanoTime());
+        }
+    }
+
+    public void time(String phase, Runnable work) {
+        time(phase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record a phase which started and ended at the given {@link System#nanoTime()}
+     */
+    public synchronized void record(String phase, long startNanos, long endNanos) {
+        phases.add(new Phase(phase, startNanos, endNanos));
+    }
+
+    /**
+     * Recorded phases ordered by start, with their start relative to the creation of the report
+     * and their duration in milliseconds
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        List<Phase> ordered = new ArrayList<>(phases);
+        ordered.sort(Comparator.comparingLong(phase -> phase.start));
+        long end = start;
+        for (Phase phase : ordered) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("startMillis", TimeUnit.NANOSECONDS.toMillis(phase.start - start));
+            entry.put("millis", TimeUnit.NANOSECONDS.toMillis(phase.end - phase.start));
+            report.put(phase.name, entry);
+            end = Math.max(end, phase.end);
+        }
+        report.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(end - start));
+        return report;
+    }
+
+    public void log() {
+        try {
+            LOGGER.info("Startup report: {}", new ObjectMapper().writeValueAsString(snapshot()));
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Unable to write the startup report", e);
+        }
+    }
+
+    private static class Phase {
+
+        private final String name;
+        private final long start;
+        private final long end;
+
+        private Phase(String name, long start, long end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -65,6 +65,22 @@ public @interface BotCommand {
      */
     int[] args() default {};
 
+    /**
+     * Number of seconds a user has to wait before using this command again
+     */
+    int cooldown() default 0;
+
+    /**
+     * How often this command may be used in a guild, as {uses, seconds}
+     */
+    int[] rate() default {};
+
+    /**
+     * Number of seconds the reply of this command is reused for the same guild and arguments
+     * instead of running it again. Only for commands whose reply depends on nothing else.
+     */
+    int cacheTtl() default 0;
+
     /**
      * Should this command be hidden from the !Help command?
      */
@@ -0,0 +1,127 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.object.entity.Message;
+import discord4j.core.spec.EmbedCreateSpec;
+import java.awt.Color;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A reply of a command with a cache TTL, kept so the next execution with the same guild and
+ * arguments can send it again without running the command. An embed is kept as the calls its
+ * builder made on the {@link EmbedCreateSpec}, so it is built once and replayed on every hit.
+ */
+class CachedReply {
+
+    private final String text;
+    private final List<Consumer<EmbedCreateSpec>> embed;
+
+    /**
+     * @param text content of the reply, or null if it only has an embed
+     * @param embed builder of the embed, or null if it has none
+     */
+    CachedReply(String text, Consumer<EmbedCreateSpec> embed) {
+        this.text = text;
+        if (embed == null) {
+            this.embed = null;
+        } else {
+            EmbedRecorder recorder = new EmbedRecorder();
+            embed.accept(recorder);
+            this.embed = Collections.unmodifiableList(recorder.calls);
+        }
+    }
+
+    /**
+     * Apply the recorded embed to a spec
+     */
+    void buildEmbed(EmbedCreateSpec spec) {
+        embed.forEach(call -> call.accept(spec));
+    }
+
+    Mono<Message> replyTo(CommandContext cc) {
+        if (embed == null) {
+            return cc.replyWith(text);
+        }
+        return text == null ? cc.replyWith(this::buildEmbed) : cc.replyWith(text, this::buildEmbed);
+    }
+
+    /**
+     * Send all cached replies of an execution in their original order
+     */
+    static Mono<Void> replay(CommandContext cc, List<CachedReply> replies) {
+        return Flux.fromIterable(replies).concatMap(reply -> reply.replyTo(cc)).then();
+    }
+
+    /**
+     * Records the calls made on it instead of building an embed
+     */
+    private static class EmbedRecorder extends EmbedCreateSpec {
+
+        private final List<Consumer<EmbedCreateSpec>> calls = new ArrayList<>();
+
+        @Override
+        public EmbedCreateSpec setTitle(String title) {
+            calls.add(spec -> spec.setTitle(title));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setDescription(String description) {
+            calls.add(spec -> spec.setDescription(description));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setUrl(String url) {
+            calls.add(spec -> spec.setUrl(url));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setTimestamp(Instant timestamp) {
+            calls.add(spec -> spec.setTimestamp(timestamp));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setColor(Color color) {
+            calls.add(spec -> spec.setColor(color));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setFooter(String text, String iconUrl) {
+            calls.add(spec -> spec.setFooter(text, iconUrl));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setImage(String url) {
+            calls.add(spec -> spec.setImage(url));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setThumbnail(String url) {
+            calls.add(spec -> spec.setThumbnail(url));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec setAuthor(String name, String url, String iconUrl) {
+            calls.add(spec -> spec.setAuthor(name, url, iconUrl));
+            return this;
+        }
+
+        @Override
+        public EmbedCreateSpec addField(String name, String value, boolean inline) {
+            calls.add(spec -> spec.addField(name, value, inline));
+            return this;
+        }
+    }
+}
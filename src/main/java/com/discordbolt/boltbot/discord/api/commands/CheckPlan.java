@@ -0,0 +1,188 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.ValidityCheck.CheckResult;
+import com.discordbolt.boltbot.discord.util.RateLimiter;
+import discord4j.core.object.entity.MessageChannel;
+import discord4j.core.object.entity.PrivateChannel;
+import discord4j.core.object.entity.TextChannel;
+import discord4j.core.object.util.Snowflake;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * The validity checks of a command, compiled once when the command is registered. Only the
+ * checks that can fail for the command are kept and they run cheapest first: rate limits and
+ * argument counts, then the channel checks against the resolved channel, then permissions which
+ * need the member and its roles.
+ */
+class CheckPlan {
+
+    private final CustomCommand command;
+
+    // Per user and per guild rate limits, null if the command has none
+    private final RateLimiter userLimiter;
+    private final RateLimiter guildLimiter;
+
+    private final boolean checkArguments;
+    private final int minArgs;
+    private final int maxArgs;
+
+    private final boolean checkChannel;
+    private final boolean checkChannelLists;
+    private final boolean denyDM;
+    private final Set<Long> channelBlacklist;
+    private final Set<Long> channelWhitelist;
+    private final Set<String> channelNameBlacklist;
+    private final Set<String> channelNameWhitelist;
+
+    private final boolean checkPermissions;
+
+    private CheckPlan(CustomCommand command, LongSupplier nanoTime) {
+        this.command = command;
+
+        Duration cooldown = command.getCooldown();
+        this.userLimiter = cooldown.isZero() || cooldown.isNegative() ? null : new RateLimiter(1, cooldown, nanoTime);
+        this.guildLimiter = command.getRateLimitUses() > 0 ? new RateLimiter(command.getRateLimitUses(), command.getRateLimitPeriod(), nanoTime) : null;
+
+        this.minArgs = command.getMinArgCount();
+        this.maxArgs = command.getMaxArgCount();
+        this.checkArguments = minArgs > 0 || maxArgs < Integer.MAX_VALUE;
+
+        this.denyDM = !command.allowDM();
+        this.channelBlacklist = new HashSet<>(command.getChannelBlacklist());
+        this.channelWhitelist = new HashSet<>(command.getChannelWhitelist());
+        this.channelNameBlacklist = new HashSet<>(command.getChannelNameBlacklist());
+        this.channelNameWhitelist = new HashSet<>(command.getChannelNameWhitelist());
+        this.checkChannelLists = !channelBlacklist.isEmpty() || !channelWhitelist.isEmpty()
+                || !channelNameBlacklist.isEmpty() || !channelNameWhitelist.isEmpty();
+        this.checkChannel = denyDM || checkChannelLists;
+
+        this.checkPermissions = !command.getPermissions().isEmpty();
+    }
+
+    static CheckPlan compile(CustomCommand command) {
+        return compile(command, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime clock the rate limits are measured with
+     */
+    static CheckPlan compile(CustomCommand command, LongSupplier nanoTime) {
+        return new CheckPlan(command, nanoTime);
+    }
+
+    /**
+     * Run every check of the plan. Rate limits and argument counts are checked synchronously, the
+     * channel and member are only resolved if a check needs them.
+     *
+     * @return the first failed check, or {@link CheckResult#VALID}
+     */
+    Mono<CheckResult> evaluate(CommandContext commandContext) {
+        CheckResult result = checkRateLimits(commandContext.getUserId().map(Snowflake::asLong).orElse(0L), commandContext.getRawGuildId());
+        if (result != CheckResult.VALID) {
+            return result.asMono();
+        }
+
+        result = checkArguments(commandContext.getArgCount());
+        if (result != CheckResult.VALID) {
+            return result.asMono();
+        }
+
+        // A message the gateway gave a guild ID for is no direct message, so its channel is only
+        // needed for the channel lists
+        boolean resolveChannel = checkChannelLists || (denyDM && commandContext.getRawGuildId() == 0);
+        Mono<CheckResult> channelResult = resolveChannel ? commandContext.getChannel()
+                .map(this::checkChannel)
+                .defaultIfEmpty(CheckResult.CHANNEL_ON_BLACKLIST) : CheckResult.VALID.asMono();
+
+        if (!checkPermissions) {
+            return channelResult;
+        }
+        return channelResult.flatMap(r -> r != CheckResult.VALID ? r.asMono() : ValidityCheck.permission(command, commandContext));
+    }
+
+    /**
+     * Take a use from the user's and the guild's bucket of this command
+     *
+     * @param userId ID of the user, or 0 if unknown
+     * @param guildId ID of the guild, or 0 if unknown
+     */
+    CheckResult checkRateLimits(long userId, long guildId) {
+        if (userLimiter != null && userId != 0) {
+            CheckResult result = toCheckResult(userLimiter.tryAcquire(userId));
+            if (result != CheckResult.VALID) {
+                return result;
+            }
+        }
+        if (guildLimiter != null && guildId != 0) {
+            return toCheckResult(guildLimiter.tryAcquire(guildId));
+        }
+        return CheckResult.VALID;
+    }
+
+    private static CheckResult toCheckResult(RateLimiter.Result result) {
+        switch (result) {
+            case LIMITED:
+                return CheckResult.RATE_LIMITED;
+            case STILL_LIMITED:
+                return CheckResult.RATE_LIMITED_AGAIN;
+            default:
+                return CheckResult.VALID;
+        }
+    }
+
+    /**
+     * Number of rate limit buckets currently held by this command
+     */
+    int getRateLimitBuckets() {
+        return (userLimiter != null ? userLimiter.size() : 0) + (guildLimiter != null ? guildLimiter.size() : 0);
+    }
+
+    CheckResult checkArguments(int argCount) {
+        if (!checkArguments) {
+            return CheckResult.VALID;
+        }
+        if (argCount < minArgs) {
+            return CheckResult.TOO_FEW_ARGUMENTS;
+        }
+        if (argCount > maxArgs) {
+            return CheckResult.TOO_MANY_ARGUMENTS;
+        }
+        return CheckResult.VALID;
+    }
+
+    CheckResult checkChannel(MessageChannel channel) {
+        String name = channel instanceof TextChannel ? ((TextChannel) channel).getName() : null;
+        return checkChannel(channel.getId().asLong(), name, channel instanceof PrivateChannel);
+    }
+
+    /**
+     * @param channelId ID of the channel the command was sent in
+     * @param channelName name of the channel, or null if it is not a text channel
+     * @param directMessage was the command sent in a direct message
+     */
+    CheckResult checkChannel(long channelId, String channelName, boolean directMessage) {
+        if (!checkChannel) {
+            return CheckResult.VALID;
+        }
+        if (denyDM && directMessage) {
+            return CheckResult.DM_NOT_ALLOWED;
+        }
+        if (!channelBlacklist.isEmpty() && channelBlacklist.contains(channelId)) {
+            return CheckResult.CHANNEL_ON_BLACKLIST;
+        }
+        if (channelName != null && !channelNameBlacklist.isEmpty() && channelNameBlacklist.contains(channelName)) {
+            return CheckResult.CHANNEL_ON_BLACKLIST;
+        }
+        if (!channelWhitelist.isEmpty() && !channelWhitelist.contains(channelId)) {
+            return CheckResult.CHANNEL_NOT_ON_WHITELIST;
+        }
+        if (!channelNameWhitelist.isEmpty() && (channelName == null || !channelNameWhitelist.contains(channelName))) {
+            return CheckResult.CHANNEL_NOT_ON_WHITELIST;
+        }
+        return CheckResult.VALID;
+    }
+}
@@ -6,22 +6,76 @@ import discord4j.core.object.util.Snowflake;
 import discord4j.core.spec.EmbedCreateSpec;
 import reactor.core.publisher.Mono;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class CommandContext {
 
     private Message message;
     private List<String> arguments;
     private CustomCommand customCommand;
+    private String commandPrefix;
 
-    CommandContext(Message message, CustomCommand customCommand) {
+    // Entities are resolved at most once per message and shared by all checks and replies
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final Mono<MessageChannel> channel;
+    private final Mono<Guild> guild;
+    private final Mono<Snowflake> guildId;
+    private final Mono<Member> member;
+    private final Mono<Boolean> directMessage;
+    private final long rawGuildId;
+
+    // Lifecycle of this execution, published as a CommandExecution once the command finishes
+    private final long timestamp = System.currentTimeMillis();
+    private final long receivedAt;
+    private final long matchedAt = System.nanoTime();
+    private volatile long checkedAt, executedAt;
+    private final AtomicBoolean replied = new AtomicBoolean();
+    private volatile ValidityCheck.CheckResult checkResult;
+
+    // Replies sent by a command with a cache TTL, null if they are not recorded
+    private volatile List<CachedReply> recordedReplies;
+    private volatile boolean replyFailed;
+
+    /**
+     * @param guildId ID of the guild the message was sent in as given by the gateway, or 0 for a
+     * direct message or if it is unknown
+     * @param receivedAt {@link System#nanoTime()} the message was received at
+     */
+    CommandContext(Message message, CustomCommand customCommand, CommandTokens tokens, String commandPrefix, long guildId, long receivedAt) {
         this.message = message;
-        getGuild().subscribe(guild -> this.arguments = Arrays.asList(getMessageContent().substring(customCommand.getCommandManager().getCommandPrefix(guild).length()).split(" ")));
+        this.arguments = Collections.unmodifiableList(tokens.asList());
         this.customCommand = customCommand;
+        this.commandPrefix = commandPrefix;
+        this.receivedAt = receivedAt;
+        this.rawGuildId = guildId;
+
+        this.channel = resolve(message::getChannel);
+        if (guildId != 0) {
+            Snowflake id = Snowflake.of(guildId);
+            this.guildId = Mono.just(id);
+            this.guild = resolve(() -> message.getClient().getGuildById(id));
+            this.directMessage = Mono.just(false);
+        } else {
+            this.guildId = channel.ofType(GuildChannel.class).map(GuildChannel::getGuildId);
+            this.guild = resolve(() -> channel.ofType(GuildChannel.class).flatMap(GuildChannel::getGuild));
+            this.directMessage = channel.map(c -> c instanceof PrivateChannel).defaultIfEmpty(false).cache();
+        }
+        this.member = resolve(() -> Mono.justOrEmpty(message.getAuthor()).flatMap(user -> this.guildId.flatMap(user::asMember)));
+    }
+
+    private <T> Mono<T> resolve(Supplier<Mono<T>> lookup) {
+        return Mono.defer(() -> {
+            lookups.incrementAndGet();
+            return lookup.get();
+        }).cache();
     }
 
     public CustomCommand getCustomCommand() {
@@ -37,19 +91,152 @@ public class CommandContext {
     }
 
     public Mono<Member> getMember() {
-        return getMessage().getAuthorAsMember();
+        return member;
     }
 
     public Mono<Guild> getGuild() {
-        return getMessage().getGuild();
+        return guild;
     }
 
     public Mono<MessageChannel> getChannel() {
-        return message.getChannel();
+        return channel;
     }
 
     public Mono<Boolean> isDirectMessage() {
-        return getChannel().ofType(PrivateChannel.class).hasElement();
+        return directMessage;
+    }
+
+    /**
+     * Get the ID of the guild the command was sent in without resolving the guild
+     */
+    Mono<Snowflake> getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * Get the ID of the guild the command was sent in as given by the gateway
+     *
+     * @return guild ID, or 0 if it is unknown or the command was sent in a direct message
+     */
+    long getRawGuildId() {
+        return rawGuildId;
+    }
+
+    /**
+     * Get the command prefix the command was invoked with
+     */
+    public String getCommandPrefix() {
+        return commandPrefix;
+    }
+
+    void markChecked(ValidityCheck.CheckResult checkResult) {
+        this.checkResult = checkResult;
+        this.checkedAt = System.nanoTime();
+        customCommand.getCommandManager().recordLatency(Stage.CHECK, customCommand, checkedAt - matchedAt);
+    }
+
+    void markExecuted() {
+        this.executedAt = System.nanoTime();
+        customCommand.getCommandManager().recordLatency(Stage.EXECUTE, customCommand, executedAt - checkedAt);
+    }
+
+    /**
+     * Key of the cached replies of this execution: the guild, the prefix, which usage replies
+     * contain, and the arguments after the command itself, so aliases share their replies
+     */
+    String getReplyCacheKey() {
+        StringBuilder sb = new StringBuilder().append(rawGuildId).append('\0').append(commandPrefix);
+        for (int i = customCommand.getCommands().size(); i < arguments.size(); i++) {
+            sb.append('\0').append(arguments.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Start recording the replies of this execution to cache them
+     */
+    void recordReplies() {
+        this.recordedReplies = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /**
+     * @return the replies sent so far, in the order they were sent, or null if one failed to be
+     * sent, so the replies are incomplete
+     */
+    List<CachedReply> getRecordedReplies() {
+        List<CachedReply> replies = recordedReplies;
+        if (replyFailed) {
+            return null;
+        }
+        synchronized (replies) {
+            return Collections.unmodifiableList(new ArrayList<>(replies));
+        }
+    }
+
+    /**
+     * Prepare a reply to be recorded once it is sent, if replies are recorded
+     *
+     * @return the reply to record, or null if replies are not recorded
+     */
+    private CachedReply record(String text, Consumer<EmbedCreateSpec> embed) {
+        return recordedReplies == null ? null : new CachedReply(text, embed);
+    }
+
+    /**
+     * @return the builder of the embed to send, which is the recorded one if the reply is
+     * recorded, so it is only built once
+     */
+    private static Consumer<EmbedCreateSpec> embedOf(CachedReply recorded, Consumer<EmbedCreateSpec> embed) {
+        return recorded == null ? embed : recorded::buildEmbed;
+    }
+
+    private void markReplied(long subscribedAt) {
+        long now = System.nanoTime();
+        CommandManager manager = customCommand.getCommandManager();
+        manager.recordLatency(Stage.REPLY, customCommand, now - subscribedAt);
+        if (replied.compareAndSet(false, true)) {
+            manager.recordLatency(Stage.END_TO_END, customCommand, now - receivedAt);
+            ShardStats shard = manager.getShardStats(message.getClient());
+            if (shard != null) {
+                shard.recordLatency(now - receivedAt);
+            }
+        }
+    }
+
+    /**
+     * Queue a reply to the channel and record how long it took to be sent. A recorded reply is
+     * only added to the recorded replies once Discord accepted it.
+     *
+     * @param text content of the reply if it is plain text, otherwise null
+     * @param recorded the reply to record, or null
+     */
+    private Mono<Message> reply(String text, CachedReply recorded, Function<MessageChannel, Mono<Message>> send) {
+        return Mono.defer(() -> {
+            long subscribedAt = System.nanoTime();
+            Mono<Message> sent = customCommand.getCommandManager().getReplyDispatcher()
+                    .send(getChannelId().asLong(), getChannel(), text, send)
+                    .doOnSuccess(m -> markReplied(subscribedAt));
+            if (recorded == null) {
+                return sent;
+            }
+            return sent.doOnSuccess(m -> recordedReplies.add(recorded))
+                    .doOnError(e -> replyFailed = true);
+        });
+    }
+
+    CommandExecution toExecution() {
+        long now = System.nanoTime();
+        long checked = checkedAt != 0 ? checkedAt : now;
+        return new CommandExecution(customCommand, rawGuildId, getChannelId().asLong(), getUserId().map(Snowflake::asLong).orElse(0L),
+                checkResult != null ? checkResult : ValidityCheck.CheckResult.VALID, timestamp,
+                checked - matchedAt, executedAt != 0 ? executedAt - checked : 0, now - receivedAt);
+    }
+
+    /**
+     * Get the number of guild, channel and member lookups made for this message so far
+     */
+    public int getLookupCount() {
+        return lookups.get();
     }
 
     public String getMessageContent() {
@@ -58,7 +245,7 @@ public class CommandContext {
     }
 
     public List<String> getArguments() {
-        return Collections.unmodifiableList(arguments);
+        return arguments;
     }
 
     public int getArgCount() {
@@ -98,7 +285,7 @@ public class CommandContext {
      * @param message Message to send
      */
     public Mono<Message> replyWith(String message) {
-        return getChannel().flatMap(channel -> channel.createMessage(message));
+        return reply(message, record(message, null), channel -> channel.createMessage(message));
     }
 
     /**
@@ -108,7 +295,9 @@ public class CommandContext {
      * @param embed Embed to send
      */
     public Mono<Message> replyWith(Consumer<EmbedCreateSpec> embed) {
-        return getChannel().flatMap(channel -> channel.createEmbed(embed));
+        CachedReply recorded = record(null, embed);
+        Consumer<EmbedCreateSpec> built = embedOf(recorded, embed);
+        return reply(null, recorded, channel -> channel.createEmbed(built));
     }
 
     /**
@@ -119,7 +308,9 @@ public class CommandContext {
      * @param embed Embed to send
      */
     public Mono<Message> replyWith(String message, Consumer<EmbedCreateSpec> embed) {
-        return getChannel().flatMap(channel -> channel.createMessage(spec -> spec.setContent(message).setEmbed(embed)));
+        CachedReply recorded = record(message, embed);
+        Consumer<EmbedCreateSpec> built = embedOf(recorded, embed);
+        return reply(null, recorded, channel -> channel.createMessage(spec -> spec.setContent(message).setEmbed(built)));
     }
 
     /**
@@ -127,6 +318,6 @@ public class CommandContext {
      * will be sent.
      */
     public Mono<Message> sendUsage() {
-        return getGuild().map(guild -> customCommand.getCommandManager().getCommandPrefix(guild)).map(prefix -> prefix + customCommand.getUsage()).flatMap(this::replyWith);
+        return replyWith(commandPrefix + customCommand.getUsage());
     }
 }
@@ -0,0 +1,94 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.ValidityCheck.CheckResult;
+
+/**
+ * Compact record of a single command execution, published to {@link
+ * CommandManager#onCommandExecution(java.util.function.Consumer)} subscribers
+ */
+public final class CommandExecution {
+
+    private final CustomCommand command;
+    private final long guildId;
+    private final long channelId;
+    private final long userId;
+    private final CheckResult checkResult;
+    private final long timestamp;
+    private final long checkNanos;
+    private final long executeNanos;
+    private final long totalNanos;
+
+    CommandExecution(CustomCommand command, long guildId, long channelId, long userId, CheckResult checkResult,
+                     long timestamp, long checkNanos, long executeNanos, long totalNanos) {
+        this.command = command;
+        this.guildId = guildId;
+        this.channelId = channelId;
+        this.userId = userId;
+        this.checkResult = checkResult;
+        this.timestamp = timestamp;
+        this.checkNanos = checkNanos;
+        this.executeNanos = executeNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    public CustomCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * @return ID of the guild the command was executed in, or 0 for direct messages
+     */
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @return ID of the user that executed the command, or 0 if unknown
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return name of the validity check result, VALID if the command was executed
+     */
+    public String getCheckResult() {
+        return checkResult.name();
+    }
+
+    public boolean isValid() {
+        return checkResult == CheckResult.VALID;
+    }
+
+    /**
+     * @return epoch milliseconds the command was received at
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return time spent in validity checks in nanoseconds
+     */
+    public long getCheckNanos() {
+        return checkNanos;
+    }
+
+    /**
+     * @return time spent executing the command in nanoseconds, 0 if it was not executed
+     */
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /**
+     * @return time from receiving the command to finishing its execution in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+}
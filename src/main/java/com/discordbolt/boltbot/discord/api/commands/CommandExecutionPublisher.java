@@ -0,0 +1,122 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.util.RingBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+
+/**
+ * Fans {@link CommandExecution} records out to subscribers without blocking the thread that
+ * executed the command. Every subscriber owns a bounded lock-free {@link RingBuffer} drained by
+ * its own thread, so a slow subscriber only ever loses its own records. A subscriber thread sleeps
+ * while its buffer is empty and is woken by the next record.
+ */
+class CommandExecutionPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandExecutionPublisher.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Publish a record to every subscriber. Never blocks.
+     */
+    void publish(CommandExecution execution) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(execution);
+        }
+    }
+
+    Disposable subscribe(Consumer<CommandExecution> consumer, int capacity, OverflowPolicy policy) {
+        Subscriber subscriber = new Subscriber(consumer, capacity, policy);
+        subscribers.add(subscriber);
+        subscriber.thread.start();
+        return subscriber;
+    }
+
+    /**
+     * Total number of records dropped by all subscribers
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    private class Subscriber implements Disposable, Runnable {
+
+        private final Consumer<CommandExecution> consumer;
+        private final RingBuffer<CommandExecution> buffer;
+        private final OverflowPolicy policy;
+        private final Thread thread;
+        private volatile boolean disposed;
+        // Set while the thread is about to sleep or sleeping, so publishers know to wake it
+        private volatile boolean waiting;
+
+        private Subscriber(Consumer<CommandExecution> consumer, int capacity, OverflowPolicy policy) {
+            this.consumer = consumer;
+            this.buffer = new RingBuffer<>(capacity);
+            this.policy = policy;
+            this.thread = new Thread(this, "command-events-" + THREAD_COUNT.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        private void offer(CommandExecution execution) {
+            while (!buffer.offer(execution)) {
+                if (policy == OverflowPolicy.DROP_NEWEST) {
+                    dropped.increment();
+                    return;
+                }
+                if (buffer.poll() != null) {
+                    dropped.increment();
+                }
+            }
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!disposed) {
+                CommandExecution execution = buffer.poll();
+                if (execution == null) {
+                    // Announce the sleep before looking again, so a record offered in between
+                    // either is found here or wakes the thread
+                    waiting = true;
+                    execution = buffer.poll();
+                    if (execution == null) {
+                        if (!disposed) {
+                            LockSupport.park(this);
+                        }
+                        waiting = false;
+                        continue;
+                    }
+                    waiting = false;
+                }
+                try {
+                    consumer.accept(execution);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Command execution subscriber failed", e);
+                }
+            }
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+            subscribers.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+}
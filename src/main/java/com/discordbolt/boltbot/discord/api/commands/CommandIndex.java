@@ -0,0 +1,70 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token trie of every registered command used to dispatch a message in a single walk.
+ * The root is keyed by the lower-cased base command and its aliases, deeper levels by
+ * the sub command tokens. The deepest node holding a command wins.
+ */
+class CommandIndex {
+
+    private final Node root = new Node();
+
+    /**
+     * Build an index of the given commands
+     *
+     * @param commands commands in registration (sorted) order. When two commands share the same
+     * path, the later one wins.
+     */
+    CommandIndex(List<CustomCommand> commands) {
+        for (CustomCommand command : commands) {
+            insert(command, command.getCommands().get(0));
+            for (String alias : command.getAliases()) {
+                insert(command, alias);
+            }
+        }
+    }
+
+    private void insert(CustomCommand command, String baseCommand) {
+        Node node = root.child(baseCommand);
+        List<String> subCommands = command.getCommands();
+        for (int i = 1; i < subCommands.size(); i++) {
+            node = node.child(subCommands.get(i));
+        }
+        node.command = command;
+    }
+
+    /**
+     * Find the command with the longest path matching the start of the user's tokens
+     *
+     * @param tokens user command tokens, starting with the base command
+     * @return matching command or null if no command matches
+     */
+    CustomCommand find(CommandTokens tokens) {
+        Node node = root;
+        CustomCommand match = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            node = node.children.get(tokens.get(i).toLowerCase());
+            if (node == null) {
+                break;
+            }
+            if (node.command != null) {
+                match = node.command;
+            }
+        }
+        return match;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private CustomCommand command;
+
+        private Node child(String token) {
+            return children.computeIfAbsent(token.toLowerCase(), t -> new Node());
+        }
+    }
+}
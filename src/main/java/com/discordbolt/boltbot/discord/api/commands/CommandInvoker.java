@@ -0,0 +1,14 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandException;
+import org.reactivestreams.Publisher;
+
+/**
+ * Direct invoker of a {@link BotCommand} method, generated once when the command is registered.
+ * Returns the Publisher returned by the method, or null for void methods.
+ */
+@FunctionalInterface
+interface CommandInvoker {
+
+    Publisher<?> invoke(CommandContext commandContext) throws CommandException;
+}
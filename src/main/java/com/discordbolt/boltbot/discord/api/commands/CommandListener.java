@@ -3,55 +3,62 @@ package com.discordbolt.boltbot.discord.api.commands;
 import discord4j.core.DiscordClient;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Message;
-import java.util.Optional;
-import reactor.core.publisher.Mono;
+import discord4j.core.object.util.Snowflake;
 
+/**
+ * Dispatches messages to commands. Almost all messages are chat, so a message is rejected using
+ * only what the gateway already gave us: its content and the ID of its guild. No entity is
+ * resolved before a message is known to start with one of the prefixes of its guild or a mention
+ * of the bot.
+ */
 class CommandListener {
 
     private CommandManager manager;
+    private ShardStats shard;
 
-    CommandListener(CommandManager manager, DiscordClient client) {
+    CommandListener(CommandManager manager, DiscordClient client, ShardStats shard) {
         this.manager = manager;
+        this.shard = shard;
 
         client.getEventDispatcher()
                 .on(MessageCreateEvent.class)
-                .map(MessageCreateEvent::getMessage)
-                .filter(message -> message.getAuthor().map(author -> !author.isBot()).orElse(false))
-                .filter(message -> message.getContent().isPresent())
-                .filterWhen(message -> message.getGuild().map(guild -> message.getContent().get().length() > manager.getCommandPrefix(guild).length()))
-                .subscribe(this::onCommand);
+                .subscribe(event -> onMessage(event, System.nanoTime()));
     }
 
-    private void onCommand(Message message) {
-        Mono.just(message)
-                .filterWhen(msg -> msg.getGuild().map(manager::getCommandPrefix).map(prefix -> msg.getContent().get().startsWith(prefix)))
-                .flatMap(msg -> msg.getGuild()
-                        .map(manager::getCommandPrefix)
-                        .map(prefix -> msg.getContent().get().substring(prefix.length()))
-                        .map(rawCommand -> manager.getCommands()
-                                .stream()
-                                .filter(command -> command.getCommands().size() <= rawCommand.split(" ").length)
-                                .filter(command -> matches(command, rawCommand))
-                                .reduce((first, second) -> second)))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .subscribe(c -> c.preexec(message));
-    }
+    private void onMessage(MessageCreateEvent event, long receivedAt) {
+        shard.recordMessage();
+        Message message = event.getMessage();
+        String content = message.getContent().orElse(null);
+        PrefixTable prefixes = manager.getPrefixTable();
+        if (content == null || content.isEmpty() || !prefixes.mayStartCommand(content.charAt(0))) {
+            shard.recordRejected();
+            return;
+        }
 
-    private boolean matches(CustomCommand customCommand, String userCommand) {
-        String userBaseCommand = userCommand.substring(0, userCommand.indexOf(" ") > 0 ? userCommand.indexOf(" ") : userCommand.length());
-
-        for (int i = 0; i < customCommand.getCommands().size(); i++) {
-            if (i == 0) {  // Checking the base command
-                if (!(customCommand.getCommands().get(0).equalsIgnoreCase(userBaseCommand) || (customCommand.getAliases().size() > 0 && customCommand.getAliases().stream().anyMatch(a -> a.equalsIgnoreCase(userBaseCommand))))) {
-                    return false;
-                }
-            } else {  // Check the sub commands
-                if (!customCommand.getCommands().get(i).equalsIgnoreCase(userCommand.split(" ")[i])) {
-                    return false;
-                }
-            }
+        // Direct messages have no guild and use the default prefix
+        long guildId = event.getGuildId().map(Snowflake::asLong).orElse(0L);
+        String prefix = prefixes.get(guildId).match(content);
+        if (prefix == null || content.length() <= prefix.length()
+                || !message.getAuthor().map(author -> !author.isBot()).orElse(false)) {
+            shard.recordRejected();
+            return;
+        }
+        long filteredAt = System.nanoTime();
+        manager.recordLatency(Stage.FILTER, null, filteredAt - receivedAt);
+
+        CommandTokens tokens = CommandTokens.tokenize(content, prefix.length());
+        CustomCommand command = manager.findCommand(tokens);
+        manager.recordLatency(Stage.MATCH, null, System.nanoTime() - filteredAt);
+        if (command == null) {
+            shard.recordUnmatched();
+            return;
+        }
+        // Gateway resumes can deliver a message twice, never run its command twice
+        if (!manager.markReceived(message.getId().asLong())) {
+            shard.recordDuplicate();
+            return;
         }
-        return true;
+        shard.recordCommand();
+        command.preexec(message, tokens, prefix, guildId, receivedAt);
     }
 }
@@ -1,31 +1,66 @@
 package com.discordbolt.boltbot.discord.api.commands;
 
+import com.discordbolt.boltbot.discord.util.ClassIndex;
+import com.discordbolt.boltbot.discord.util.SnowflakeWindow;
 import discord4j.core.DiscordClient;
+import discord4j.core.event.domain.lifecycle.ReadyEvent;
 import discord4j.core.object.entity.Guild;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.reflections.Reflections;
 import org.reflections.scanners.MethodAnnotationsScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
 
 public class CommandManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CommandManager.class);
     private static String DEFAULT_PREFIX = "!";
+    private static final int DEFAULT_EXECUTION_BUFFER_SIZE = 8192;
+    public static final String DEFAULT_LANE = "default";
+    public static final int DEFAULT_LANE_CONCURRENCY = 64;
+    public static final int DEFAULT_LANE_QUEUE_CAPACITY = 256;
+    // A resumed gateway session replays the events it missed, some of which were already received.
+    // 512 KB, enough for the commands of five minutes at over 100 commands per second.
+    private static final int DEDUPLICATION_CAPACITY = 1 << 16;
+    private static final Duration DEDUPLICATION_WINDOW = Duration.ofMinutes(5);
 
-    private DiscordClient client;
-    private List<CustomCommand> commands = new ArrayList<>();
-    private Map<Long, String> commandPrefixes = new HashMap<>();
-    private CustomCommand helpCommand;
+    private Map<Integer, ShardStats> shards = new ConcurrentSkipListMap<>();
+    // DiscordClient does not override equals, so this is keyed by identity
+    private Map<DiscordClient, ShardStats> clientShards = new ConcurrentHashMap<>();
+    // Replaced as a whole on every change, so readers need a single volatile read
+    private volatile CommandSnapshot snapshot = CommandSnapshot.EMPTY;
+    private final Object registryLock = new Object();
+    // Replaced as a whole on every change, like the snapshot
+    private volatile PrefixTable prefixes = new PrefixTable(DEFAULT_PREFIX);
+    private List<Consumer<Map<Long, List<String>>>> prefixListeners = new CopyOnWriteArrayList<>();
+    private HelpCommand helpCommand;
+    private CommandStats stats = new CommandStats();
+    private CommandExecutionPublisher executionPublisher = new CommandExecutionPublisher();
+    private PermissionCache permissionCache = new PermissionCache(PermissionCache.DEFAULT_MAX_ENTRIES);
+    private ReplyDispatcher replyDispatcher = new ReplyDispatcher();
+    private SnowflakeWindow recentCommands = new SnowflakeWindow(DEDUPLICATION_CAPACITY, DEDUPLICATION_WINDOW);
+    private Map<String, ExecutionLane> lanes = new ConcurrentHashMap<>();
+    private Map<String, ExecutionLane> moduleLanes = new ConcurrentHashMap<>();
+    private ExecutionLane defaultLane = new ExecutionLane(DEFAULT_LANE, DEFAULT_LANE_CONCURRENCY, DEFAULT_LANE_QUEUE_CAPACITY);
 
     /**
      * Initialize Command API
@@ -34,45 +69,154 @@ public class CommandManager {
      * @param packagePrefix package string where commands are located
      */
     public CommandManager(DiscordClient client, String packagePrefix) {
+        this(client, loadCommands(packagePrefix));
+    }
+
+    /**
+     * Initialize the Command API without attaching it to a client. Attach it to every shard with
+     * {@link #attach(DiscordClient)}.
+     *
+     * @param packagePrefix package string where commands are located
+     */
+    public CommandManager(String packagePrefix) {
+        this(loadCommands(packagePrefix));
+    }
+
+    /**
+     * Initialize the Command API with the given commands and attach it to a client
+     *
+     * @param client DiscordClient
+     * @param commands commands to register in addition to the help command
+     */
+    CommandManager(DiscordClient client, List<CustomCommand> commands) {
+        this(commands);
+        attach(client);
+    }
+
+    /**
+     * Initialize the Command API with the given commands without attaching it to a client
+     *
+     * @param commands commands to register in addition to the help command
+     */
+    public CommandManager(List<CustomCommand> commands) {
         LOGGER.info("Initializing Command API ");
 
-        // Save DiscordClient
-        this.client = client;
+        lanes.put(DEFAULT_LANE, defaultLane);
 
         // Set the command manager
         CustomCommand.setCommandManager(this);
 
-        // Get all public static methods with @BotCommand and create CustomCommand objects
-        commands.addAll(new Reflections(packagePrefix, new MethodAnnotationsScanner())
-                .getMethodsAnnotatedWith(BotCommand.class)
+        // Register the commands and our help command in one batch
+        helpCommand = new HelpCommand(this);
+        List<CustomCommand> initial = new ArrayList<>(commands);
+        initial.add(helpCommand);
+        registerCommands(initial);
+
+        LOGGER.info("Loaded {} commands.", snapshot.getCommands().size());
+    }
+
+    /**
+     * Handle commands received by the client of a bot without shards
+     *
+     * @param client DiscordClient
+     */
+    public void attach(DiscordClient client) {
+        attach(client, 0, 1);
+    }
+
+    /**
+     * Handle commands received by a client. All shards of the bot are attached to the same
+     * CommandManager, so commands, prefixes, caches and limits are shared between them.
+     *
+     * @param client DiscordClient of one shard
+     * @param shardIndex index of the shard
+     * @param shardCount number of shards of the bot
+     */
+    public void attach(DiscordClient client, int shardIndex, int shardCount) {
+        ShardStats shard = new ShardStats(client, shardIndex);
+        if (shards.putIfAbsent(shardIndex, shard) != null) {
+            throw new IllegalStateException("Shard " + shardIndex + " is already attached");
+        }
+        clientShards.put(client, shard);
+
+        // Keep cached member permissions up to date
+        permissionCache.subscribe(client.getEventDispatcher());
+
+        // Mentions of the bot are prefixes too, the bot user is known once a shard is ready
+        client.getSelfId().ifPresent(id -> setBotId(id.asLong()));
+        client.getEventDispatcher().on(ReadyEvent.class).subscribe(event -> setBotId(event.getSelf().getId().asLong()));
+
+        // Register our command listener
+        CommandListener commandListener = new CommandListener(this, client, shard);
+        LOGGER.info("Attached shard {} of {}", shardIndex, shardCount);
+    }
+
+    /**
+     * Get all public static methods with @BotCommand and create CustomCommand objects
+     *
+     * @param packagePrefix package string where commands are located
+     */
+    public static List<CustomCommand> loadCommands(String packagePrefix) {
+        return findCommandMethods(packagePrefix)
                 .stream()
                 .filter(method -> Modifier.isStatic(method.getModifiers()))
                 .filter(method -> Modifier.isPublic(method.getModifiers()))
-                .map(method -> new CustomCommand(method.getAnnotation(BotCommand.class)) {
-                    @Override
-                    public void execute(CommandContext commandContext) {
-                        try {
-                            method.invoke(null, commandContext);
-                        } catch (IllegalAccessException | InvocationTargetException e) {
-                            LOGGER.error("Unable to execute command \"" + String.join(" ", commandContext.getCustomCommand().getCommands()) + "\"", e);
-                        }
+                .map(method -> {
+                    try {
+                        return Optional.<CustomCommand>of(new MethodCommand(method));
+                    } catch (ReflectiveOperationException e) {
+                        LOGGER.error("Unable to bind command method '" + method + "'", e);
+                        return Optional.<CustomCommand>empty();
                     }
                 })
-                .collect(Collectors.toList()));
-
-        // Register our help command
-        helpCommand = new HelpCommand(this);
-        registerCommand(helpCommand);
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
 
-        LOGGER.info("Loaded {} commands.", commands.size());
+    /**
+     * Find all methods annotated with @BotCommand. The index generated at compile time is used when
+     * present, otherwise the classpath is scanned.
+     */
+    private static Set<Method> findCommandMethods(String packagePrefix) {
+        long start = System.nanoTime();
+        Optional<List<String>> index = ClassIndex.read(ClassIndex.COMMAND_INDEX, packagePrefix);
+        if (index.isEmpty()) {
+            Set<Method> methods = new Reflections(packagePrefix, new MethodAnnotationsScanner()).getMethodsAnnotatedWith(BotCommand.class);
+            LOGGER.info("No command index found, scanned classpath for {} command methods in {} ms", methods.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return methods;
+        }
 
-        // Register our command listener
-        CommandListener commandListener = new CommandListener(this, client);
+        Set<Method> methods = new LinkedHashSet<>();
+        for (String entry : index.get()) {
+            int split = entry.indexOf('#');
+            try {
+                Class<?> c = Class.forName(entry.substring(0, split), false, CommandManager.class.getClassLoader());
+                methods.add(c.getMethod(entry.substring(split + 1), CommandContext.class));
+            } catch (ReflectiveOperationException e) {
+                LOGGER.error("Unable to load indexed command '" + entry + "'", e);
+            }
+        }
+        LOGGER.info("Loaded {} command methods from the command index in {} ms", methods.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return methods;
     }
 
     public void registerCommand(CustomCommand command) {
-        commands.add(command);
-        sortCommands();
+        registerCommands(Collections.singletonList(command));
+    }
+
+    /**
+     * Register a batch of commands. The command list and its indexes are rebuilt once for the
+     * whole batch and published atomically, so a message never sees only part of the batch.
+     *
+     * @param commands commands to register
+     */
+    public void registerCommands(Collection<? extends CustomCommand> commands) {
+        // Compile the checks before the commands can be matched
+        commands.forEach(CustomCommand::getCheckPlan);
+        synchronized (registryLock) {
+            snapshot = snapshot.register(commands);
+        }
     }
 
     /**
@@ -86,7 +230,80 @@ public class CommandManager {
     }
 
     public void setCommandPrefix(long guildID, String commandPrefix) {
-        commandPrefixes.put(guildID, commandPrefix);
+        setCommandPrefixes(guildID, Collections.singletonList(commandPrefix));
+    }
+
+    /**
+     * Set the command prefixes of a guild. Commands are recognized after any of them and after a
+     * mention of the bot.
+     *
+     * @param guildID ID of the guild
+     * @param commandPrefixes new prefixes, the first is the one shown in help. Empty to restore
+     * the default prefix.
+     */
+    public void setCommandPrefixes(long guildID, Collection<String> commandPrefixes) {
+        setCommandPrefixes(Collections.singletonMap(guildID, commandPrefixes));
+    }
+
+    /**
+     * Change the command prefixes of many guilds at once, rebuilding the prefix table only once
+     *
+     * @param commandPrefixes new prefixes per guild ID
+     */
+    public void setCommandPrefixes(Map<Long, ? extends Collection<String>> commandPrefixes) {
+        Map<Long, List<String>> changes = new LinkedHashMap<>();
+        commandPrefixes.forEach((guildID, guildPrefixes) -> changes.put(guildID, Collections.unmodifiableList(new ArrayList<>(guildPrefixes))));
+        synchronized (registryLock) {
+            prefixes = prefixes.with(changes);
+        }
+        invalidateHelp();
+        prefixListeners.forEach(listener -> listener.accept(Collections.unmodifiableMap(changes)));
+    }
+
+    /**
+     * Be notified of every change of guild command prefixes, e.g. to persist them. Listeners are
+     * called on the thread that changed the prefixes, after the change took effect.
+     *
+     * @param listener receives the new prefixes per guild ID, an empty list restores the default
+     * prefix
+     * @return Disposable to unsubscribe with
+     */
+    public Disposable onCommandPrefixChange(Consumer<Map<Long, List<String>>> listener) {
+        prefixListeners.add(listener);
+        return () -> prefixListeners.remove(listener);
+    }
+
+    /**
+     * Recognize commands after a mention of the bot user
+     */
+    private void setBotId(long botId) {
+        synchronized (registryLock) {
+            prefixes = prefixes.withMentions(botId);
+        }
+    }
+
+    /**
+     * Create or reconfigure an execution lane and route the given modules to it. Commands of
+     * modules without a lane run in the {@value #DEFAULT_LANE} lane.
+     *
+     * @param name lane name, {@value #DEFAULT_LANE} to configure the default lane
+     * @param maxConcurrency number of commands the lane runs at once
+     * @param queueCapacity number of commands that may wait for the lane before new ones are
+     * rejected
+     * @param modules modules whose commands run in this lane
+     */
+    public void configureLane(String name, int maxConcurrency, int queueCapacity, String... modules) {
+        ExecutionLane lane = lanes.compute(name.toLowerCase(), (key, existing) -> {
+            if (existing == null) {
+                return new ExecutionLane(key, maxConcurrency, queueCapacity);
+            }
+            existing.configure(maxConcurrency, queueCapacity);
+            return existing;
+        });
+        for (String module : modules) {
+            moduleLanes.put(module.toLowerCase(), lane);
+        }
+        LOGGER.info("Lane '{}' runs {} commands at once with a queue of {} for modules {}", lane.getName(), maxConcurrency, queueCapacity, Arrays.toString(modules));
     }
 
     public void disableHelpCommand() {
@@ -94,20 +311,171 @@ public class CommandManager {
     }
 
     public void unregisterCommand(CustomCommand command) {
-        commands.remove(command);
+        unregisterCommands(Collections.singletonList(command));
+    }
+
+    /**
+     * Unregister a batch of commands, publishing the result atomically. Cached replies of the
+     * commands are forgotten.
+     *
+     * @param commands commands to unregister
+     */
+    public void unregisterCommands(Collection<? extends CustomCommand> commands) {
+        synchronized (registryLock) {
+            snapshot = snapshot.unregister(commands);
+        }
+        commands.forEach(CustomCommand::invalidateReplyCache);
     }
 
-    public void onCommandExecution(Consumer<CommandContext> consumer) {
-        CustomCommand.setCommandConsumer(consumer);
+    /**
+     * Subscribe to a record of every command execution. Records are delivered on a dedicated thread
+     * of the subscriber, so a slow subscriber never delays command handling. When the subscriber
+     * falls {@value #DEFAULT_EXECUTION_BUFFER_SIZE} records behind, new records are dropped.
+     *
+     * @param consumer subscriber
+     * @return Disposable to unsubscribe with
+     */
+    public Disposable onCommandExecution(Consumer<CommandExecution> consumer) {
+        return onCommandExecution(consumer, DEFAULT_EXECUTION_BUFFER_SIZE, OverflowPolicy.DROP_NEWEST);
     }
 
     /**
-     * Get the Discord4J client
+     * Subscribe to a record of every command execution
      *
-     * @return IDiscordClient
+     * @param consumer subscriber
+     * @param bufferSize number of records buffered for this subscriber
+     * @param overflowPolicy what to do when the buffer is full
+     * @return Disposable to unsubscribe with
+     */
+    public Disposable onCommandExecution(Consumer<CommandExecution> consumer, int bufferSize, OverflowPolicy overflowPolicy) {
+        return executionPublisher.subscribe(consumer, bufferSize, overflowPolicy);
+    }
+
+    /**
+     * Get the number of command execution records dropped because a subscriber was too slow
+     */
+    public long getDroppedExecutions() {
+        return executionPublisher.getDropped();
+    }
+
+    void publishExecution(CommandExecution execution) {
+        executionPublisher.publish(execution);
+    }
+
+    /**
+     * Record the latency of a lifecycle stage
+     *
+     * @param command command the latency belongs to, or null if no command has been matched yet
+     */
+    void recordLatency(Stage stage, CustomCommand command, long nanos) {
+        stats.recordLatency(stage, nanos);
+        if (command != null) {
+            command.getStats().recordLatency(stage, nanos);
+        }
+    }
+
+    /**
+     * Get the execution lane the commands of a module run in
      */
-    DiscordClient getClient() {
-        return client;
+    ExecutionLane getLane(String module) {
+        return moduleLanes.getOrDefault(module.toLowerCase(), defaultLane);
+    }
+
+    /**
+     * Get the combined statistics of all commands
+     */
+    public CommandStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Snapshot of every command API metric, keyed by metric name
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("all", stats.snapshot());
+        metrics.put("registryVersion", snapshot.getVersion());
+
+        PrefixTable prefixTable = prefixes;
+        Map<String, Object> prefixMetrics = new LinkedHashMap<>();
+        prefixMetrics.put("guilds", prefixTable.size());
+        prefixMetrics.put("prefixSets", prefixTable.getMatcherCount());
+        metrics.put("prefixes", prefixMetrics);
+
+        Map<String, Object> perCommand = new LinkedHashMap<>();
+        for (CustomCommand command : getCommands()) {
+            Map<String, Object> snapshot = command.getStats().snapshot();
+            int rateLimitBuckets = command.getCheckPlan().getRateLimitBuckets();
+            if (rateLimitBuckets > 0) {
+                snapshot.put("rateLimitBuckets", rateLimitBuckets);
+            }
+            if (!command.getCacheTtl().isZero()) {
+                snapshot.put("cachedReplies", command.getReplyCacheSize());
+            }
+            perCommand.put(String.join(" ", command.getCommands()), snapshot);
+        }
+        metrics.put("commands", perCommand);
+
+        Map<String, Object> permissions = new LinkedHashMap<>();
+        permissions.put("size", permissionCache.size());
+        permissions.put("hits", permissionCache.getHits());
+        permissions.put("misses", permissionCache.getMisses());
+        permissions.put("guildGenerations", permissionCache.getGuildGenerations());
+        metrics.put("permissionCache", permissions);
+
+        Map<String, Object> laneMetrics = new LinkedHashMap<>();
+        lanes.values().forEach(lane -> laneMetrics.put(lane.getName(), lane.snapshot()));
+        metrics.put("lanes", laneMetrics);
+
+        metrics.put("replies", replyDispatcher.snapshot());
+
+        Map<String, Object> shardMetrics = new LinkedHashMap<>();
+        shards.forEach((index, shard) -> shardMetrics.put(String.valueOf(index), shard.snapshot()));
+        metrics.put("shards", shardMetrics);
+
+        Map<String, Object> deduplication = new LinkedHashMap<>();
+        deduplication.put("capacity", recentCommands.getCapacity());
+        deduplication.put("windowSeconds", recentCommands.getWindow().getSeconds());
+        deduplication.put("duplicates", recentCommands.getDuplicates());
+        deduplication.put("earlyEvictions", recentCommands.getEarlyEvictions());
+        metrics.put("deduplication", deduplication);
+
+        metrics.put("droppedExecutions", getDroppedExecutions());
+        return metrics;
+    }
+
+    /**
+     * Get the Discord4J clients of all attached shards, ordered by shard index
+     */
+    List<DiscordClient> getClients() {
+        return shards.values().stream().map(ShardStats::getClient).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the statistics of the shard a client belongs to
+     *
+     * @return statistics, or null if the client is not attached
+     */
+    ShardStats getShardStats(DiscordClient client) {
+        return clientShards.get(client);
+    }
+
+    /**
+     * Get the cache of effective member permissions used by permission checks
+     */
+    PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    /**
+     * Get the queue all command replies are sent through
+     */
+    ReplyDispatcher getReplyDispatcher() {
+        return replyDispatcher;
+    }
+
+    void setReplyDispatcher(ReplyDispatcher replyDispatcher) {
+        this.replyDispatcher = replyDispatcher;
     }
 
     /**
@@ -116,7 +484,35 @@ public class CommandManager {
      * @return UnmodifiableList of CustomCommands
      */
     List<CustomCommand> getCommands() {
-        return Collections.unmodifiableList(commands);
+        return snapshot.getCommands();
+    }
+
+    /**
+     * Get the current snapshot of the registered commands and their indexes
+     */
+    CommandSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Remember the message of a command, so a second delivery of the same message is not executed
+     * again
+     *
+     * @param messageId ID of the message
+     * @return true if the message was not seen before
+     */
+    boolean markReceived(long messageId) {
+        return recentCommands.add(messageId);
+    }
+
+    /**
+     * Find the registered command matching the given user tokens
+     *
+     * @param tokens user command tokens with the prefix removed
+     * @return the command with the longest matching path, or null if none match
+     */
+    CustomCommand findCommand(CommandTokens tokens) {
+        return snapshot.find(tokens);
     }
 
     /**
@@ -132,10 +528,26 @@ public class CommandManager {
     }
 
     String getCommandPrefix(long guildID) {
-        return commandPrefixes.getOrDefault(guildID, DEFAULT_PREFIX);
+        return prefixes.get(guildID).getPrimary();
+    }
+
+    /**
+     * Get the command prefixes of a given guild, without the mentions of the bot
+     */
+    public List<String> getCommandPrefixes(long guildID) {
+        return prefixes.get(guildID).getPrefixes();
     }
 
-    private void sortCommands() {
-        commands.sort(Comparator.comparing(c -> (c.getModule() + " " + String.join(" ", c.getCommands()))));
+    /**
+     * Get the current prefix table, to look up many prefixes with a single volatile read
+     */
+    PrefixTable getPrefixTable() {
+        return prefixes;
+    }
+
+    private void invalidateHelp() {
+        if (helpCommand != null) {
+            helpCommand.invalidate();
+        }
     }
 }
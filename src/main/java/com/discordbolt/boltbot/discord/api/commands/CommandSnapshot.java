@@ -0,0 +1,76 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable view of the registered commands together with the indexes derived from them. The
+ * CommandManager publishes a new snapshot for every batch of changes, so a reader holding a
+ * snapshot always sees a command list and an index which agree with each other.
+ */
+class CommandSnapshot {
+
+    static final CommandSnapshot EMPTY = new CommandSnapshot(0, Collections.emptyList());
+
+    private static final Comparator<CustomCommand> ORDER = Comparator.comparing(c -> c.getModule() + " " + String.join(" ", c.getCommands()));
+
+    private final long version;
+    private final List<CustomCommand> commands;
+    private final CommandIndex index;
+
+    private CommandSnapshot(long version, List<CustomCommand> commands) {
+        this.version = version;
+        this.commands = Collections.unmodifiableList(commands);
+        this.index = new CommandIndex(commands);
+    }
+
+    /**
+     * Snapshot with the given commands added, sorted and indexed once for the whole batch
+     */
+    CommandSnapshot register(Collection<? extends CustomCommand> added) {
+        List<CustomCommand> next = new ArrayList<>(commands.size() + added.size());
+        next.addAll(commands);
+        next.addAll(added);
+        // Stable, so of two commands on the same path the one registered last still wins
+        next.sort(ORDER);
+        return new CommandSnapshot(version + 1, next);
+    }
+
+    /**
+     * Snapshot with the given commands removed
+     */
+    CommandSnapshot unregister(Collection<? extends CustomCommand> removed) {
+        Set<CustomCommand> remove = Collections.newSetFromMap(new IdentityHashMap<>());
+        remove.addAll(removed);
+        List<CustomCommand> next = new ArrayList<>(commands.size());
+        for (CustomCommand command : commands) {
+            if (!remove.contains(command)) {
+                next.add(command);
+            }
+        }
+        return new CommandSnapshot(version + 1, next);
+    }
+
+    /**
+     * Incremented with every published change
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registered commands sorted by module and command
+     */
+    List<CustomCommand> getCommands() {
+        return commands;
+    }
+
+    CustomCommand find(CommandTokens tokens) {
+        return index.find(tokens);
+    }
+}
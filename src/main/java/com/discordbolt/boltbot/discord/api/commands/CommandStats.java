@@ -0,0 +1,117 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.util.LatencyHistogram;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution statistics of a single command, or of all commands together
+ */
+public class CommandStats {
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder entityLookups = new LongAdder();
+    private final LongAdder replyCacheHits = new LongAdder();
+    private final LongAdder replyCacheMisses = new LongAdder();
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+
+    CommandStats() {
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new LatencyHistogram());
+        }
+    }
+
+    void recordExecution(int lookups) {
+        executions.increment();
+        entityLookups.add(lookups);
+    }
+
+    void recordReplyCacheHit() {
+        replyCacheHits.increment();
+    }
+
+    void recordReplyCacheMiss() {
+        replyCacheMisses.increment();
+    }
+
+    void recordLatency(Stage stage, long nanos) {
+        latencies.get(stage).record(nanos);
+    }
+
+    /**
+     * Number of times the command has been executed, including executions rejected by a validity
+     * check
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * Total number of guild, channel and member lookups made while executing the command
+     */
+    public long getEntityLookups() {
+        return entityLookups.sum();
+    }
+
+    /**
+     * Average number of guild, channel and member lookups made per execution
+     */
+    public double getEntityLookupsPerExecution() {
+        long count = getExecutions();
+        return count == 0 ? 0 : (double) getEntityLookups() / count;
+    }
+
+    /**
+     * Number of executions answered with a cached reply
+     */
+    public long getReplyCacheHits() {
+        return replyCacheHits.sum();
+    }
+
+    /**
+     * Number of executions of a command with cached replies which had to run it
+     */
+    public long getReplyCacheMisses() {
+        return replyCacheMisses.sum();
+    }
+
+    /**
+     * Share of the executions of commands with cached replies answered from the cache
+     */
+    public double getReplyCacheHitRatio() {
+        long hits = getReplyCacheHits();
+        long lookups = hits + getReplyCacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Get the latency histogram of a lifecycle stage
+     */
+    public LatencyHistogram getLatency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("executions", getExecutions());
+        snapshot.put("entityLookupsPerExecution", getEntityLookupsPerExecution());
+        long hits = getReplyCacheHits(), misses = getReplyCacheMisses();
+        if (hits + misses > 0) {
+            Map<String, Object> replyCache = new LinkedHashMap<>();
+            replyCache.put("hits", hits);
+            replyCache.put("misses", misses);
+            replyCache.put("hitRatio", getReplyCacheHitRatio());
+            snapshot.put("replyCache", replyCache);
+        }
+        Map<String, Object> stages = new LinkedHashMap<>();
+        latencies.forEach((stage, histogram) -> {
+            if (histogram.getCount() > 0) {
+                stages.put(stage.name(), histogram.snapshot());
+            }
+        });
+        snapshot.put("latency", stages);
+        return snapshot;
+    }
+}
@@ -0,0 +1,106 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The tokens of a command message. The message content is scanned once and only the start and
+ * end offset of each token is recorded, token strings are created the first time they are read.
+ * Tokens are separated by any amount of whitespace and an argument wrapped in double quotes is a
+ * single token without the quotes.
+ */
+final class CommandTokens {
+
+    private static final char QUOTE = '"';
+
+    private final String content;
+    private int[] offsets;
+    private int count;
+    private String[] values;
+
+    private CommandTokens(String content) {
+        this.content = content;
+        this.offsets = new int[8];
+    }
+
+    /**
+     * Tokenize the given content
+     *
+     * @param content message content
+     * @param fromIndex index to start scanning at, usually the length of the command prefix
+     * @return tokens of the content
+     */
+    static CommandTokens tokenize(String content, int fromIndex) {
+        CommandTokens tokens = new CommandTokens(content);
+        int length = content.length();
+        int i = fromIndex;
+        while (i < length) {
+            char c = content.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == QUOTE) {
+                int end = content.indexOf(QUOTE, i + 1);
+                if (end < 0) {
+                    end = length;
+                }
+                tokens.add(i + 1, end);
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < length && !Character.isWhitespace(content.charAt(i))) {
+                    i++;
+                }
+                tokens.add(start, i);
+            }
+        }
+        tokens.values = new String[tokens.count];
+        return tokens;
+    }
+
+    private void add(int start, int end) {
+        if ((count + 1) * 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[count * 2] = start;
+        offsets[count * 2 + 1] = end;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    String get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        String value = values[index];
+        if (value == null) {
+            value = content.substring(offsets[index * 2], offsets[index * 2 + 1]);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Get an unmodifiable list view of the tokens
+     */
+    List<String> asList() {
+        return new TokenList();
+    }
+
+    private class TokenList extends AbstractList<String> implements RandomAccess {
+
+        @Override
+        public String get(int index) {
+            return CommandTokens.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -1,28 +1,28 @@
 package com.discordbolt.boltbot.discord.api.commands;
 
+import com.discordbolt.boltbot.discord.api.commands.ValidityCheck.CheckResult;
 import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandException;
 import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandRuntimeException;
+import com.discordbolt.boltbot.discord.util.TtlCache;
 import com.sun.istack.internal.NotNull;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.util.Permission;
 import discord4j.core.object.util.PermissionSet;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 
-import static com.discordbolt.boltbot.discord.api.commands.ValidityCheck.*;
-
 public abstract class CustomCommand {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CustomCommand.class);
+    private static final int REPLY_CACHE_MAX_ENTRIES = 1024;
 
-    private static Consumer<CommandContext> commandConsumer;
     private static CommandManager manager;
 
     private List<String> command;
@@ -39,6 +39,14 @@ public abstract class CustomCommand {
     private PermissionSet permissions = PermissionSet.none();
     private int[] argRange = new int[]{0, Integer.MAX_VALUE};
     private boolean secret, allowDM, deleteTrigger;
+    private Duration cooldown = Duration.ZERO;
+    private int rateUses;
+    private Duration ratePeriod = Duration.ZERO;
+    private Duration cacheTtl = Duration.ZERO;
+    private volatile TtlCache<String, List<CachedReply>> replyCache;
+
+    private final CommandStats stats = new CommandStats();
+    private volatile CheckPlan checkPlan;
 
     CustomCommand(BotCommand a) {
         this(a.command(), a.description(), a.usage(), a.module());
@@ -54,6 +62,15 @@ public abstract class CustomCommand {
             setMinArgumentCount(a.args()[0]);
             setMaxArgumentCount(a.args()[1]);
         }
+        if (a.cooldown() > 0) {
+            setCooldown(Duration.ofSeconds(a.cooldown()));
+        }
+        if (a.rate().length == 2) {
+            setRateLimit(a.rate()[0], Duration.ofSeconds(a.rate()[1]));
+        }
+        if (a.cacheTtl() > 0) {
+            setCacheTtl(Duration.ofSeconds(a.cacheTtl()));
+        }
         setSecret(a.secret());
         setAllowDM(a.allowDM());
         setDeleteCommandMessage(a.deleteCommandMessage());
@@ -73,10 +90,6 @@ public abstract class CustomCommand {
         this.command = Arrays.stream(command).map(String::toLowerCase).collect(Collectors.toList());
     }
 
-    static void setCommandConsumer(Consumer<CommandContext> consumer) {
-        CustomCommand.commandConsumer = consumer;
-    }
-
     static void setCommandManager(CommandManager manager) {
         CustomCommand.manager = manager;
     }
@@ -129,6 +142,30 @@ public abstract class CustomCommand {
         return argRange[1];
     }
 
+    public Duration getCooldown() {
+        return cooldown;
+    }
+
+    public int getRateLimitUses() {
+        return rateUses;
+    }
+
+    public Duration getRateLimitPeriod() {
+        return ratePeriod;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Number of replies currently cached, 0 if replies of this command are not cached
+     */
+    public int getReplyCacheSize() {
+        TtlCache<String, List<CachedReply>> cache = replyCache;
+        return cache == null ? 0 : cache.size();
+    }
+
     public boolean isSecret() {
         return secret;
     }
@@ -141,6 +178,10 @@ public abstract class CustomCommand {
         return deleteTrigger;
     }
 
+    public CommandStats getStats() {
+        return stats;
+    }
+
     public CustomCommand setDescription(String description) {
         this.description = description;
         return this;
@@ -163,110 +204,209 @@ public abstract class CustomCommand {
 
     public CustomCommand setChannelWhitelist(long... channelWhitelist) {
         this.channelWhitelist = LongStream.of(channelWhitelist).boxed().collect(Collectors.toSet());
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setChannelBlacklist(long... channelBlacklist) {
         this.channelBlacklist = LongStream.of(channelBlacklist).boxed().collect(Collectors.toSet());
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setChannelNameWhitelist(String... channelNameWhitelist) {
         Collections.addAll(this.channelNameWhitelist, channelNameWhitelist);
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setChannelNameBlacklist(String... channelNameBlacklist) {
         Collections.addAll(this.channelNameBlacklist, channelNameBlacklist);
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setPermissions(Permission... permissions) {
         this.permissions = PermissionSet.of(permissions);
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setArgumentCount(int argumentCount) {
         this.argRange[0] = argumentCount;
         this.argRange[1] = argumentCount;
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setMinArgumentCount(int minArgumentCount) {
         this.argRange[0] = minArgumentCount;
+        this.checkPlan = null;
         return this;
     }
 
     public CustomCommand setMaxArgumentCount(int maxArgumentCount) {
         this.argRange[1] = maxArgumentCount;
+        this.checkPlan = null;
         return this;
     }
 
-    public CustomCommand setSecret(boolean secret) {
-        this.secret = secret;
+    /**
+     * Set how long a user has to wait before using this command again
+     *
+     * @param cooldown time between uses, zero to disable the cooldown
+     */
+    public CustomCommand setCooldown(Duration cooldown) {
+        this.cooldown = cooldown;
+        this.checkPlan = null;
         return this;
     }
 
-    public CustomCommand setAllowDM(boolean allowDM) {
-        this.allowDM = allowDM;
+    /**
+     * Set how often this command may be used in a guild
+     *
+     * @param uses number of uses allowed per period, zero to disable the rate limit
+     * @param period period the uses are counted over
+     */
+    public CustomCommand setRateLimit(int uses, Duration period) {
+        this.rateUses = uses;
+        this.ratePeriod = period;
+        this.checkPlan = null;
         return this;
     }
 
-    public CustomCommand setDeleteCommandMessage(boolean deleteCommandMessage) {
-        this.deleteTrigger = deleteCommandMessage;
+    /**
+     * Reuse the replies of this command for the same guild and arguments instead of running it
+     * again. Only set this on commands whose replies depend on nothing but their guild and
+     * arguments, and which do nothing but reply.
+     *
+     * @param cacheTtl how long replies are reused, zero to always run the command
+     */
+    public CustomCommand setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+        this.replyCache = cacheTtl.isZero() || cacheTtl.isNegative() ? null : new TtlCache<>(REPLY_CACHE_MAX_ENTRIES, cacheTtl);
         return this;
     }
 
-    private Flux<ValidityCheck.CheckResult> allPreChecks(CommandContext commandContext) {
-        return Flux.concat(isAllowedChannel(commandContext), isValidArgumentCount(commandContext), hasPermission(commandContext));
+    /**
+     * Forget all cached replies of this command
+     */
+    public void invalidateReplyCache() {
+        TtlCache<String, List<CachedReply>> cache = replyCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    public CustomCommand setSecret(boolean secret) {
+        this.secret = secret;
+        return this;
     }
 
-    private Flux<ValidityCheck.CheckResult> isAllowedChannel(CommandContext commandContext) {
-        return Flux.concat(channelDM(this, commandContext), channelBlacklist(this, commandContext),
-                channelNameBlacklist(this, commandContext), channelWhitelist(this, commandContext),
-                channelNameWhitelist(this, commandContext));
+    public CustomCommand setAllowDM(boolean allowDM) {
+        this.allowDM = allowDM;
+        this.checkPlan = null;
+        return this;
     }
 
-    private Flux<ValidityCheck.CheckResult> isValidArgumentCount(CommandContext commandContext) {
-        return Flux.concat(argumentLowerBound(this, commandContext), argumentUpperBound(this, commandContext));
+    public CustomCommand setDeleteCommandMessage(boolean deleteCommandMessage) {
+        this.deleteTrigger = deleteCommandMessage;
+        return this;
     }
 
-    private Flux<ValidityCheck.CheckResult> hasPermission(CommandContext commandContext) {
-        return Flux.concat(permission(this, commandContext));
+    /**
+     * Get the compiled validity checks of this command, compiling them if the command changed
+     * since they were last compiled
+     */
+    CheckPlan getCheckPlan() {
+        CheckPlan plan = checkPlan;
+        if (plan == null) {
+            plan = CheckPlan.compile(this);
+            checkPlan = plan;
+        }
+        return plan;
     }
 
     CommandManager getCommandManager() {
         return manager;
     }
 
-    void preexec(Message message) {
-        CommandContext cc = new CommandContext(message, this);
+    void preexec(Message message, CommandTokens tokens, String commandPrefix, long guildId, long receivedAt) {
+        CommandContext cc = new CommandContext(message, this, tokens, commandPrefix, guildId, receivedAt);
 
-        allPreChecks(cc)
-                .filter(checkResult -> checkResult != CheckResult.VALID)
-                .next()
-                .switchIfEmpty(Mono.just(CheckResult.VALID))
+        getCheckPlan().evaluate(cc)
                 .flatMap(checkResult -> {
+                    cc.markChecked(checkResult);
                     if (checkResult == CheckResult.VALID) {
-                        try {
-                            this.execute(cc);
-                        } catch (CommandException | CommandRuntimeException e) {
-                            return cc.replyWith(e.getMessage());
-                        }
+                        return invoke(cc);
+                    } else if (checkResult.getMessage().isEmpty()) {
                         return Mono.empty();
                     } else {
-                        return cc.replyWith(checkResult.getMessage());
+                        return cc.replyWith(checkResult.getMessage()).then();
                     }
                 })
+                .onErrorResume(e -> {
+                    LOGGER.error("Unable to execute command \"" + String.join(" ", getCommands()) + "\"", e);
+                    return Mono.empty();
+                })
+                .then(Mono.defer(() -> shouldDeleteTrigger() ? message.delete() : Mono.empty()))
                 .doFinally(signal -> {
-                    if (shouldDeleteTrigger()) {
-                        message.delete().subscribe();
-                    }
-                    if (commandConsumer != null) {
-                        commandConsumer.accept(cc);
-                    }
+                    stats.recordExecution(cc.getLookupCount());
+                    manager.getStats().recordExecution(cc.getLookupCount());
+                    manager.publishExecution(cc.toExecution());
                 })
-                .subscribe();
+                .subscribe(null, e -> LOGGER.warn("Unable to delete command message", e));
+    }
+
+    /**
+     * Run the command in the execution lane of its module and complete once the Publisher it
+     * returned completes. Command exceptions, whether thrown or signalled, and rejections by a
+     * full lane are replied to the user. If replies of the command are cached, a cached reply is
+     * sent instead of running the command, and the replies of a successful run are cached.
+     */
+    private Mono<Void> invoke(CommandContext cc) {
+        TtlCache<String, List<CachedReply>> cache = replyCache;
+        String cacheKey = cache == null ? null : cc.getReplyCacheKey();
+        if (cache != null) {
+            List<CachedReply> cached = cache.get(cacheKey);
+            if (cached != null) {
+                stats.recordReplyCacheHit();
+                manager.getStats().recordReplyCacheHit();
+                cc.markExecuted();
+                return CachedReply.replay(cc, cached);
+            }
+            stats.recordReplyCacheMiss();
+            manager.getStats().recordReplyCacheMiss();
+            cc.recordReplies();
+        }
+
+        Mono<Void> task = Mono.defer(() -> {
+            try {
+                Publisher<?> result = run(cc);
+                return result == null ? Mono.<Void>empty() : Mono.from(result).then();
+            } catch (CommandException e) {
+                return Mono.error(e);
+            }
+        }).doOnSuccess(v -> {
+            List<CachedReply> replies = cache == null ? null : cc.getRecordedReplies();
+            if (replies != null) {
+                cache.put(cacheKey, replies);
+            }
+        }).doOnTerminate(cc::markExecuted);
+
+        return manager.getLane(getModule()).execute(task)
+                .onErrorResume(e -> e instanceof CommandException || e instanceof CommandRuntimeException, e -> cc.replyWith(e.getMessage()).then());
+    }
+
+    /**
+     * Run the command. Calls {@link #execute(CommandContext)}, commands replying without
+     * blocking extend {@link ReactiveCustomCommand} instead.
+     *
+     * @return Publisher completing once the command is done, or null if it is already done
+     */
+    Publisher<?> run(CommandContext commandContext) throws CommandException {
+        execute(commandContext);
+        return Mono.empty();
     }
 
     public abstract void execute(CommandContext commandContext) throws CommandException;
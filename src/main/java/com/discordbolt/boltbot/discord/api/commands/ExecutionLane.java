@@ -0,0 +1,170 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandRuntimeException;
+import com.discordbolt.boltbot.discord.api.commands.exceptions.ExceptionMessage;
+import com.discordbolt.boltbot.discord.util.LatencyHistogram;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A bulkhead commands of one or more modules are executed in. Each lane has its own scheduler,
+ * runs at most {@code maxConcurrency} commands at once and queues at most {@code queueCapacity}
+ * more. Commands arriving at a full queue are rejected, so a slow module can only ever delay
+ * commands in its own lane. A command cancelled while it waits leaves the queue and is never run.
+ */
+class ExecutionLane {
+
+    private final String name;
+    private final Scheduler scheduler;
+    private volatile int maxConcurrency;
+    private volatile int queueCapacity;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    ExecutionLane(String name, int maxConcurrency, int queueCapacity) {
+        this.name = name;
+        this.scheduler = Schedulers.newElastic("lane-" + name, 60, true);
+        configure(maxConcurrency, queueCapacity);
+    }
+
+    void configure(int maxConcurrency, int queueCapacity) {
+        if (maxConcurrency < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Lane " + name + " needs a max concurrency of at least 1 and a non-negative queue capacity");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+        drain();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Run a task in this lane once a slot is free
+     *
+     * @param task task to run, subscribed to on the lane's scheduler
+     * @return Mono completing when the task completes, or failing with a CommandRuntimeException if
+     * the lane's queue is full. Cancelling it removes the task from the queue, or cancels it if it
+     * is running.
+     */
+    Mono<Void> execute(Mono<Void> task) {
+        return Mono.create(sink -> {
+            Pending pending = new Pending(task, sink);
+            sink.onCancel(() -> cancel(pending));
+            if (tryAcquire()) {
+                start(pending);
+                return;
+            }
+
+            if (queued.incrementAndGet() > queueCapacity) {
+                queued.decrementAndGet();
+                rejected.increment();
+                sink.error(new CommandRuntimeException(ExceptionMessage.COMMAND_BUSY));
+                return;
+            }
+            queue.offer(pending);
+            // A slot may have been released between the failed acquire and the offer
+            drain();
+        });
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = active.get();
+            if (current >= maxConcurrency) {
+                return false;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            Pending pending = queue.poll();
+            if (pending == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            if (pending.cancelled) {
+                active.decrementAndGet();
+                continue;
+            }
+            start(pending);
+        }
+    }
+
+    private void start(Pending pending) {
+        waitTime.record(System.nanoTime() - pending.enqueuedAt);
+        executed.increment();
+        pending.running = pending.task
+                .subscribeOn(scheduler)
+                // Runs once, whether the task terminated or was cancelled, or both raced
+                .doFinally(signal -> release())
+                .subscribe(null, pending.sink::error, pending.sink::success);
+        // Cancelled before it could see the running task
+        if (pending.cancelled) {
+            pending.running.dispose();
+        }
+    }
+
+    private void cancel(Pending pending) {
+        pending.cancelled = true;
+        if (queue.remove(pending)) {
+            queued.decrementAndGet();
+        }
+        Disposable running = pending.running;
+        if (running != null) {
+            running.dispose();
+        }
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("maxConcurrency", maxConcurrency);
+        snapshot.put("queueCapacity", queueCapacity);
+        snapshot.put("active", active.get());
+        snapshot.put("queueDepth", queued.get());
+        snapshot.put("executed", executed.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("wait", waitTime.snapshot());
+        return snapshot;
+    }
+
+    private static class Pending {
+
+        private final Mono<Void> task;
+        private final MonoSink<Void> sink;
+        private final long enqueuedAt = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile Disposable running;
+
+        private Pending(Mono<Void> task, MonoSink<Void> sink) {
+            this.task = task;
+            this.sink = sink;
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.discordbolt.boltbot.discord.api.commands;
 
+import com.discordbolt.boltbot.discord.util.LruCache;
+import discord4j.core.object.entity.Message;
 import discord4j.core.spec.EmbedCreateSpec;
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import reactor.core.publisher.Mono;
 
-class HelpCommand extends CustomCommand {
+class HelpCommand extends ReactiveCustomCommand {
+
+    private static final int MAX_CACHED_PAGES = 1024;
+    private static final Color EMBED_COLOR = new Color(36, 153, 153);
 
     private static String[] command = {"help"};
 
     private CommandManager manager;
+    private volatile HelpIndex index;
 
     HelpCommand(CommandManager manager) {
         super(command);
@@ -19,62 +30,158 @@ class HelpCommand extends CustomCommand {
     }
 
     @Override
-    public void execute(CommandContext cc) {
-        List<String> modules = manager.getCommands().stream().map(CustomCommand::getModule).distinct().collect(Collectors.toList());
-
-        if (cc.getArgCount() > 1) {
-            String userRequestedModule = cc.combineArgs(1, cc.getArgCount() - 1);
-            modules.removeIf(s -> !s.equalsIgnoreCase(userRequestedModule));
-            if (modules.size() < 1) {
-                cc.replyWith("No modules found matching \"" + userRequestedModule + "\".").subscribe();
-                return;
-            }
+    public Mono<Message> run(CommandContext cc) {
+        String requestedModule = cc.getArgCount() > 1 ? cc.combineArgs(1, cc.getArgCount() - 1) : null;
+        // Show the main prefix of the guild, whichever prefix or mention the command was used with
+        HelpPage page = getPage(manager.getCommandPrefix(cc.getRawGuildId()), requestedModule);
+
+        if (page == HelpPage.NOT_FOUND) {
+            return cc.replyWith("No modules found matching \"" + requestedModule + "\".");
+        }
+
+        if (page.fields.isEmpty()) {
+            return cc.replyWith("No available commands.");
         }
 
-        long commandCount = manager.getCommands().stream().filter(c -> modules.contains(c.getModule())).count();
+        return cc.replyWith("Available Commands:", spec -> createHelpEmbed(spec, page));
+    }
+
+    /**
+     * Drop all precomputed help text. Called whenever a command prefix changes, changes to the
+     * registered commands are picked up from the snapshot version.
+     */
+    void invalidate() {
+        index = null;
+    }
 
-        if (commandCount <= 0) {
-            cc.replyWith("No available commands.").subscribe();
-            return;
+    /**
+     * Get the help page for a prefix and optional module, building and caching it on first use
+     *
+     * @param commandPrefix prefix shown in front of every command
+     * @param requestedModule module to show, or null for all modules
+     * @return the help page, or {@link HelpPage#NOT_FOUND} if no module matches the requested module
+     */
+    HelpPage getPage(String commandPrefix, String requestedModule) {
+        HelpIndex current = index;
+        CommandSnapshot snapshot = manager.getSnapshot();
+        if (current == null || current.version != snapshot.getVersion()) {
+            current = new HelpIndex(snapshot);
+            index = current;
         }
 
-        String commandPrefix = cc.getGuild().map(manager::getCommandPrefix).block();
-        cc.replyWith("Available Commands:", spec -> createHelpEmbed(spec, modules, commandPrefix)).subscribe();
+        PageKey key = new PageKey(commandPrefix, requestedModule == null ? null : requestedModule.toLowerCase());
+        HelpPage page = current.pages.get(key);
+        if (page == null) {
+            page = current.buildPage(key);
+            current.pages.put(key, page);
+        }
+        return page;
     }
 
+    EmbedCreateSpec createHelpEmbed(EmbedCreateSpec embed, HelpPage page) {
+        embed.setColor(EMBED_COLOR);
+        for (String[] field : page.fields) {
+            embed.addField(field[0], field[1], false);
+        }
+        return embed;
+    }
 
-    private EmbedCreateSpec createHelpEmbed(EmbedCreateSpec embed, List<String> modules, String commandPrefix) {
-        int fieldCount = 0;
-        embed.setColor(new Color(36, 153, 153));
+    /**
+     * Visible commands grouped by module, built once per set of registered commands
+     */
+    private static class HelpIndex {
+
+        // Module name -> "command | description" lines of every visible command in that module
+        private final Map<String, List<String[]>> modules = new LinkedHashMap<>();
+        private final Map<String, String> moduleNames = new LinkedHashMap<>();
+        private final LruCache<PageKey, HelpPage> pages = new LruCache<>(MAX_CACHED_PAGES);
+        private final long version;
+
+        private HelpIndex(CommandSnapshot snapshot) {
+            this.version = snapshot.getVersion();
+            for (CustomCommand command : snapshot.getCommands()) {
+                moduleNames.putIfAbsent(command.getModule().toLowerCase(), command.getModule());
+                List<String[]> lines = modules.computeIfAbsent(command.getModule(), m -> new ArrayList<>());
+                if (!command.isSecret()) {
+                    lines.add(new String[]{String.join(" ", command.getCommands()), command.getDescription()});
+                }
+            }
+        }
 
-        StringBuilder sb = new StringBuilder();
-        for (String module : modules) {
-            // Discord only allows 25 fields in an embed
-            if (fieldCount > 25)
-                continue;
-            sb.setLength(0);
+        private HelpPage buildPage(PageKey key) {
+            Map<String, List<String[]>> selected = modules;
+            if (key.module != null) {
+                String module = moduleNames.get(key.module);
+                if (module == null) {
+                    return HelpPage.NOT_FOUND;
+                }
+                selected = Collections.singletonMap(module, modules.get(module));
+            }
 
-            // Get all commands of this module
-            manager.getCommands().stream().filter(c -> c.getModule().equals(module)).forEach(command -> {
-                if (command.isSecret()) {
-                    return;
+            List<String[]> fields = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, List<String[]>> module : selected.entrySet()) {
+                // Discord only allows 25 fields in an embed
+                if (fields.size() >= 25) {
+                    break;
                 }
+                sb.setLength(0);
 
-                sb.append('`').append(commandPrefix).append(String.join(" ", command.getCommands())).append("` | ").append(command.getDescription()).append('\n');
-            });
+                for (String[] line : module.getValue()) {
+                    sb.append('`').append(key.prefix).append(line[0]).append("` | ").append(line[1]).append('\n');
+                }
 
-            // Discord only allows field descriptions to be 1024 characters
-            if (sb.length() > 1024) {
-                sb.setLength(1024);
+                // Discord only allows field descriptions to be 1024 characters
+                if (sb.length() > 1024) {
+                    sb.setLength(1024);
+                }
+
+                if (module.getKey().length() == 0 || sb.length() == 0) {
+                    continue;
+                }
+
+                fields.add(new String[]{module.getKey(), sb.toString()});
             }
+            return new HelpPage(fields);
+        }
+    }
+
+    static class HelpPage {
+
+        private static final HelpPage NOT_FOUND = new HelpPage(Collections.emptyList());
+
+        private final List<String[]> fields;
+
+        private HelpPage(List<String[]> fields) {
+            this.fields = fields;
+        }
+    }
+
+    private static class PageKey {
 
-            if (module.length() == 0 || sb.length() == 0) {
-                continue;
+        private final String prefix;
+        private final String module;
+
+        private PageKey(String prefix, String module) {
+            this.prefix = prefix;
+            this.module = module;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PageKey)) {
+                return false;
             }
+            PageKey other = (PageKey) o;
+            return prefix.equals(other.prefix) && Objects.equals(module, other.module);
+        }
 
-            fieldCount++;
-            embed.addField(module, sb.toString(), false);
+        @Override
+        public int hashCode() {
+            return 31 * prefix.hashCode() + Objects.hashCode(module);
         }
-        return embed;
     }
 }
@@ -0,0 +1,109 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandException;
+import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandRuntimeException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A command backed by a public static method annotated with {@link BotCommand}
+ */
+class MethodCommand extends ReactiveCustomCommand {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodCommand.class);
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Publisher.class, CommandContext.class);
+    private static final MethodType VOID_INVOKER_TYPE = MethodType.methodType(void.class, CommandContext.class);
+
+    private final CommandInvoker invoker;
+
+    MethodCommand(Method method) throws ReflectiveOperationException {
+        super(method.getAnnotation(BotCommand.class));
+        this.invoker = bind(method);
+    }
+
+    /**
+     * Bind a static command method to a {@link CommandInvoker} so calling it costs the same as a
+     * normal interface call. Falls back to an exact method handle invocation if a lambda can not
+     * be generated for the method.
+     *
+     * @param method public static method taking a single CommandContext and returning void or a
+     * Publisher
+     * @return invoker calling the method
+     * @throws ReflectiveOperationException if the method can not be accessed or has the wrong
+     * signature
+     */
+    static CommandInvoker bind(Method method) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = lookup.unreflect(method);
+        if (!handle.type().parameterList().equals(INVOKER_TYPE.parameterList())) {
+            throw new NoSuchMethodException(method + " must take a single CommandContext parameter");
+        }
+
+        if (handle.type().returnType() == void.class) {
+            VoidInvoker invoker = bindVoid(lookup, method, handle);
+            return commandContext -> {
+                invoker.invoke(commandContext);
+                return null;
+            };
+        }
+        if (!Publisher.class.isAssignableFrom(handle.type().returnType())) {
+            throw new NoSuchMethodException(method + " must return void or a Publisher");
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(CommandInvoker.class), INVOKER_TYPE, handle, handle.type());
+            return (CommandInvoker) site.getTarget().invoke();
+        } catch (Throwable t) {
+            LOGGER.debug("Unable to generate invoker for {}, using a method handle", method, t);
+        }
+
+        MethodHandle exact = handle.asType(INVOKER_TYPE);
+        return commandContext -> {
+            try {
+                return (Publisher<?>) exact.invokeExact(commandContext);
+            } catch (CommandException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new CommandRuntimeException(t);
+            }
+        };
+    }
+
+    private static VoidInvoker bindVoid(MethodHandles.Lookup lookup, Method method, MethodHandle handle) {
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(VoidInvoker.class), VOID_INVOKER_TYPE, handle, VOID_INVOKER_TYPE);
+            return (VoidInvoker) site.getTarget().invoke();
+        } catch (Throwable t) {
+            LOGGER.debug("Unable to generate invoker for {}, using a method handle", method, t);
+        }
+
+        MethodHandle exact = handle.asType(VOID_INVOKER_TYPE);
+        return commandContext -> {
+            try {
+                exact.invokeExact(commandContext);
+            } catch (CommandException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new CommandRuntimeException(t);
+            }
+        };
+    }
+
+    @Override
+    public Publisher<?> run(CommandContext commandContext) throws CommandException {
+        return invoker.invoke(commandContext);
+    }
+
+    @FunctionalInterface
+    interface VoidInvoker {
+
+        void invoke(CommandContext commandContext) throws CommandException;
+    }
+}
@@ -0,0 +1,17 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+/**
+ * What to do with a new element when a bounded buffer is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Drop the element being added
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the oldest buffered element to make room
+     */
+    DROP_OLDEST
+}
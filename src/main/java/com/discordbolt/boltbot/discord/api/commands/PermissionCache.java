@@ -0,0 +1,214 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.event.EventDispatcher;
+import discord4j.core.event.domain.guild.GuildDeleteEvent;
+import discord4j.core.event.domain.guild.MemberLeaveEvent;
+import discord4j.core.event.domain.guild.MemberUpdateEvent;
+import discord4j.core.event.domain.role.RoleDeleteEvent;
+import discord4j.core.event.domain.role.RoleUpdateEvent;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Role;
+import discord4j.core.object.util.PermissionSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache of the effective permissions of guild members, computed by OR-ing the permission bitsets
+ * of their roles. Entries of a single member are dropped when the member is updated or leaves,
+ * all entries of a guild are dropped when one of its roles is updated or deleted, or when the bot
+ * leaves it.
+ * <p>
+ * Members are spread over stripes, each an LRU map with its own lock, so privileged commands of
+ * different members rarely contend. Every stripe counts the invalidations made in it. A lookup
+ * that missed only caches what it resolved if no invalidation happened in its stripe meanwhile,
+ * so permissions resolved before an update never outlive it.
+ */
+class PermissionCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // Bumping a guild's generation invalidates every entry of that guild in O(1)
+    private final Map<Long, Integer> guildGenerations = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PermissionCache(int maxEntries) {
+        int stripeEntries = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeEntries);
+        }
+    }
+
+    /**
+     * Invalidate cached permissions from gateway events
+     */
+    void subscribe(EventDispatcher dispatcher) {
+        dispatcher.on(RoleUpdateEvent.class).subscribe(e -> invalidateGuild(e.getCurrent().getGuildId().asLong()));
+        dispatcher.on(RoleDeleteEvent.class).subscribe(e -> invalidateGuild(e.getGuildId().asLong()));
+        dispatcher.on(GuildDeleteEvent.class).subscribe(e -> removeGuild(e.getGuildId().asLong()));
+        dispatcher.on(MemberUpdateEvent.class).subscribe(e -> invalidateMember(e.getGuildId().asLong(), e.getMemberId().asLong()));
+        dispatcher.on(MemberLeaveEvent.class).subscribe(e -> invalidateMember(e.getGuildId().asLong(), e.getUser().getId().asLong()));
+    }
+
+    /**
+     * Get the raw permission bitmask of a member
+     *
+     * @param member resolves the member on a cache miss
+     * @return permission bitmask, or empty if the member could not be resolved
+     */
+    Mono<Long> getPermissions(long guildId, long memberId, Supplier<Mono<Member>> member) {
+        MemberKey key = new MemberKey(guildId, memberId);
+        Stripe stripe = stripe(key);
+        // Read before the stripe, an invalidation bumps the generation before the stripes
+        int generation = guildGenerations.getOrDefault(guildId, 0);
+        long invalidations;
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry != null && entry.generation == generation) {
+                hits.increment();
+                return Mono.just(entry.permissions);
+            }
+            invalidations = stripe.invalidations;
+        }
+
+        misses.increment();
+        return member.get()
+                .flatMapMany(Member::getRoles)
+                .map(Role::getPermissions)
+                .reduce(PermissionSet::or)
+                .map(PermissionSet::getRawValue)
+                .doOnNext(permissions -> {
+                    synchronized (stripe) {
+                        if (stripe.invalidations == invalidations) {
+                            stripe.entries.put(key, new Entry(permissions, generation));
+                        }
+                    }
+                });
+    }
+
+    void invalidateGuild(long guildId) {
+        guildGenerations.merge(guildId, 1, Integer::sum);
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.invalidations++;
+            }
+        }
+    }
+
+    void invalidateMember(long guildId, long memberId) {
+        MemberKey key = new MemberKey(guildId, memberId);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.entries.remove(key);
+            stripe.invalidations++;
+        }
+    }
+
+    /**
+     * Forget a guild the bot left, including its generation. Rare, so the entries of the guild
+     * are looked for in every stripe.
+     */
+    void removeGuild(long guildId) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.keySet().removeIf(key -> key.guildId == guildId);
+                stripe.invalidations++;
+            }
+        }
+        guildGenerations.remove(guildId);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Number of guilds with a generation, which are the guilds whose roles changed since the bot
+     * joined them
+     */
+    int getGuildGenerations() {
+        return guildGenerations.size();
+    }
+
+    private Stripe stripe(MemberKey key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Guarded by its own monitor
+     */
+    private static class Stripe {
+
+        private final Map<MemberKey, Entry> entries;
+        private long invalidations;
+
+        private Stripe(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<MemberKey, PermissionCache.Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+
+    private static class Entry {
+
+        private final long permissions;
+        private final int generation;
+
+        private Entry(long permissions, int generation) {
+            this.permissions = permissions;
+            this.generation = generation;
+        }
+    }
+
+    private static class MemberKey {
+
+        private final long guildId;
+        private final long memberId;
+
+        private MemberKey(long guildId, long memberId) {
+            this.guildId = guildId;
+            this.memberId = memberId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MemberKey)) {
+                return false;
+            }
+            MemberKey other = (MemberKey) o;
+            return guildId == other.guildId && memberId == other.memberId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(guildId) + Long.hashCode(memberId);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matches the start of a message against a set of command prefixes in a single scan. The
+ * prefixes are compiled into a trie anchored at the start of the message, so the cost of a match
+ * depends on the length of the longest prefix and not on the number of prefixes. Besides the
+ * prefixes of a guild, a matcher matches the mentions of the bot. Immutable, so guilds with the
+ * same prefixes share one matcher.
+ */
+class PrefixMatcher {
+
+    private final List<String> prefixes;
+    // Trie nodes, node 0 is the root. The children of a node are stored next to each other, sorted
+    // by their character, starting at firstChild.
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    // The prefix ending at a node, or null
+    private final String[] terminal;
+
+    /**
+     * @param prefixes command prefixes, the first is the one shown to users
+     * @param mentions mentions of the bot, matched like prefixes but never shown
+     */
+    PrefixMatcher(List<String> prefixes, List<String> mentions) {
+        if (prefixes.isEmpty()) {
+            throw new IllegalArgumentException("A prefix matcher needs at least one prefix");
+        }
+        for (String prefix : prefixes) {
+            if (prefix == null || prefix.isEmpty()) {
+                throw new IllegalArgumentException("A command prefix needs at least one character");
+            }
+        }
+        this.prefixes = Collections.unmodifiableList(new ArrayList<>(prefixes));
+
+        // Build a tree first, then lay it out breadth first so siblings are adjacent
+        List<String> all = new ArrayList<>(prefixes);
+        all.addAll(mentions);
+        Node root = new Node();
+        int nodes = 1;
+        for (String prefix : all) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(prefix.charAt(i), child);
+                    nodes++;
+                }
+                node = child;
+            }
+            node.prefix = prefix;
+        }
+
+        labels = new char[nodes];
+        firstChild = new int[nodes];
+        childCount = new int[nodes];
+        terminal = new String[nodes];
+        List<Node> order = new ArrayList<>(nodes);
+        order.add(root);
+        for (int index = 0; index < order.size(); index++) {
+            Node node = order.get(index);
+            terminal[index] = node.prefix;
+            firstChild[index] = order.size();
+            childCount[index] = node.children.size();
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                labels[order.size()] = child.getKey();
+                order.add(child.getValue());
+            }
+        }
+    }
+
+    /**
+     * Find the longest prefix the content starts with
+     *
+     * @param content message content
+     * @return the matched prefix, or null if the content starts with none of them
+     */
+    String match(String content) {
+        String matched = null;
+        int node = 0;
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            node = child(node, content.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            if (terminal[node] != null) {
+                matched = terminal[node];
+            }
+        }
+        return matched;
+    }
+
+    private int child(int node, char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the prefixes of the matcher in the order they were given, without the mentions
+     */
+    List<String> getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * Get the prefix shown to users, such as in the help command
+     */
+    String getPrimary() {
+        return prefixes.get(0);
+    }
+
+    private static class Node {
+
+        private final Map<Character, Node> children = new TreeMap<>();
+        private String prefix;
+    }
+}
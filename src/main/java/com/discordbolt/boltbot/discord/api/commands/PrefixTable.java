@@ -0,0 +1,294 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable command prefixes of every guild, keyed by the primitive guild ID so a lookup neither
+ * boxes nor allocates. Every guild gets a {@link PrefixMatcher} for its prefixes and the mentions
+ * of the bot, guilds with the same prefixes share one. Also knows the first character of every
+ * prefix in use, which rejects most chat before the matcher of its guild is looked up. Changes are
+ * made by creating a new table: a copy of the slot arrays with the changed slots written, so a
+ * change costs one array copy, and the table is only rebuilt from its entries when it grows past
+ * half full. Until then the first characters of prefixes no longer in use are still accepted and
+ * their matchers stay interned, which costs a little filtering but never misses a command.
+ */
+class PrefixTable {
+
+    // Guild IDs are never 0, so 0 marks an empty slot
+    private static final long EMPTY = 0;
+
+    private final List<String> mentions;
+    private final PrefixMatcher defaultMatcher;
+    // Matchers by prefixes, shared by the tables derived from each other without a rebuild
+    private final Map<List<String>, PrefixMatcher> matchers;
+    private final long[] keys;
+    private final PrefixMatcher[] values;
+    private final int size;
+    // First characters of all prefixes below 128 as a bit set, and whether any prefix starts above
+    private final long firstCharsLow, firstCharsHigh;
+    private final boolean nonAsciiFirstChar;
+
+    PrefixTable(String defaultPrefix) {
+        this(Collections.singletonList(defaultPrefix), Collections.emptyList(), Collections.emptyMap());
+    }
+
+    /**
+     * @param defaultPrefixes prefixes of guilds without prefixes of their own and of direct
+     * messages
+     * @param mentions mentions of the bot, matched in every guild
+     * @param guildPrefixes prefixes per guild ID
+     */
+    private PrefixTable(List<String> defaultPrefixes, List<String> mentions, Map<Long, List<String>> guildPrefixes) {
+        this.mentions = mentions;
+
+        // Keep the table at most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(guildPrefixes.size(), 1) * 4 - 1);
+        this.keys = new long[capacity];
+        this.values = new PrefixMatcher[capacity];
+
+        this.matchers = new ConcurrentHashMap<>();
+        this.defaultMatcher = new PrefixMatcher(defaultPrefixes, mentions);
+        matchers.put(defaultMatcher.getPrefixes(), defaultMatcher);
+        int entries = 0;
+        for (Map.Entry<Long, List<String>> entry : guildPrefixes.entrySet()) {
+            PrefixMatcher matcher = matchers.computeIfAbsent(entry.getValue(), prefixes -> new PrefixMatcher(prefixes, mentions));
+            if (matcher != defaultMatcher) {
+                entries += put(keys, values, entry.getKey(), matcher);
+            }
+        }
+        this.size = entries;
+
+        FirstChars firstChars = new FirstChars(0, 0, false).with(mentions);
+        for (List<String> prefixes : matchers.keySet()) {
+            firstChars = firstChars.with(prefixes);
+        }
+        this.firstCharsLow = firstChars.low;
+        this.firstCharsHigh = firstChars.high;
+        this.nonAsciiFirstChar = firstChars.nonAscii;
+    }
+
+    /**
+     * Table with changed slots, sharing the matchers of the table it was derived from
+     */
+    private PrefixTable(PrefixTable from, long[] keys, PrefixMatcher[] values, int size, FirstChars firstChars) {
+        this.mentions = from.mentions;
+        this.defaultMatcher = from.defaultMatcher;
+        this.matchers = from.matchers;
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+        this.firstCharsLow = firstChars.low;
+        this.firstCharsHigh = firstChars.high;
+        this.nonAsciiFirstChar = firstChars.nonAscii;
+    }
+
+    /**
+     * @param guildId ID of the guild, or 0 for direct messages
+     * @return matcher of the guild, or of the default prefixes if it has none
+     */
+    PrefixMatcher get(long guildId) {
+        if (guildId == EMPTY || size == 0) {
+            return defaultMatcher;
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(guildId) & mask; ; slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == guildId) {
+                return values[slot];
+            }
+            if (key == EMPTY) {
+                return defaultMatcher;
+            }
+        }
+    }
+
+    /**
+     * Can a message starting with this character be a command in any guild
+     */
+    boolean mayStartCommand(char first) {
+        if (first < 64) {
+            return (firstCharsLow & (1L << first)) != 0;
+        }
+        if (first < 128) {
+            return (firstCharsHigh & (1L << (first - 64))) != 0;
+        }
+        return nonAsciiFirstChar;
+    }
+
+    PrefixMatcher getDefault() {
+        return defaultMatcher;
+    }
+
+    /**
+     * Number of guilds with prefixes of their own
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of distinct prefix sets, including the default one and sets no longer in use since
+     * the table was last rebuilt
+     */
+    int getMatcherCount() {
+        return matchers.size();
+    }
+
+    /**
+     * Table with the given prefixes set. The slot arrays are copied once for the whole batch, and
+     * the table is rebuilt only if the batch grows it past half full.
+     *
+     * @param prefixes new prefixes per guild ID, an empty list restores the default prefixes
+     */
+    PrefixTable with(Map<Long, ? extends Collection<String>> prefixes) {
+        long[] newKeys = keys.clone();
+        PrefixMatcher[] newValues = values.clone();
+        int newSize = size;
+        FirstChars firstChars = new FirstChars(firstCharsLow, firstCharsHigh, nonAsciiFirstChar);
+        for (Map.Entry<Long, ? extends Collection<String>> entry : prefixes.entrySet()) {
+            long guildId = entry.getKey();
+            if (guildId == EMPTY) {
+                throw new IllegalArgumentException("Command prefixes need a guild");
+            }
+            List<String> list = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(entry.getValue())));
+            if (list.isEmpty() || list.equals(defaultMatcher.getPrefixes())) {
+                newSize -= remove(newKeys, newValues, guildId);
+                continue;
+            }
+            if ((newSize + 1) * 2 > newKeys.length) {
+                // Full enough to grow, rebuild from the entries changed so far and the rest of the batch
+                Map<Long, List<String>> guildPrefixes = entries(newKeys, newValues);
+                prefixes.forEach((id, changed) -> {
+                    List<String> changedList = new ArrayList<>(new LinkedHashSet<>(changed));
+                    if (changedList.isEmpty()) {
+                        guildPrefixes.remove(id);
+                    } else {
+                        guildPrefixes.put(id, Collections.unmodifiableList(changedList));
+                    }
+                });
+                if (guildPrefixes.containsKey(EMPTY)) {
+                    throw new IllegalArgumentException("Command prefixes need a guild");
+                }
+                return new PrefixTable(defaultMatcher.getPrefixes(), mentions, guildPrefixes);
+            }
+            PrefixMatcher matcher = matchers.computeIfAbsent(list, p -> new PrefixMatcher(p, mentions));
+            newSize += put(newKeys, newValues, guildId, matcher);
+            firstChars = firstChars.with(list);
+        }
+        return new PrefixTable(this, newKeys, newValues, newSize, firstChars);
+    }
+
+    /**
+     * Table matching the mentions of the given bot user in every guild
+     */
+    PrefixTable withMentions(long botId) {
+        List<String> botMentions = Arrays.asList("<@" + botId + ">", "<@!" + botId + ">");
+        if (botMentions.equals(mentions)) {
+            return this;
+        }
+        return new PrefixTable(defaultMatcher.getPrefixes(), botMentions, entries(keys, values));
+    }
+
+    private static Map<Long, List<String>> entries(long[] keys, PrefixMatcher[] values) {
+        Map<Long, List<String>> entries = new LinkedHashMap<>();
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                entries.put(keys[slot], values[slot].getPrefixes());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return 1 if the key was added, 0 if it replaced an existing one
+     */
+    private static int put(long[] keys, PrefixMatcher[] values, long key, PrefixMatcher value) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                return 1;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Remove a key, moving later keys of its probe sequence back so none of them becomes
+     * unreachable
+     *
+     * @return 1 if the key was removed, 0 if it was not present
+     */
+    private static int remove(long[] keys, PrefixMatcher[] values, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // Move the key into the hole unless its home slot lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        return 1;
+    }
+
+    private static int hash(long key) {
+        // Snowflakes share their low bits, so mix the high bits in
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * First characters of prefixes below 128 as a bit set, and whether any prefix starts above
+     */
+    private static class FirstChars {
+
+        private final long low, high;
+        private final boolean nonAscii;
+
+        private FirstChars(long low, long high, boolean nonAscii) {
+            this.low = low;
+            this.high = high;
+            this.nonAscii = nonAscii;
+        }
+
+        private FirstChars with(List<String> prefixes) {
+            long newLow = low, newHigh = high;
+            boolean newNonAscii = nonAscii;
+            for (String prefix : prefixes) {
+                char first = prefix.charAt(0);
+                if (first < 64) {
+                    newLow |= 1L << first;
+                } else if (first < 128) {
+                    newHigh |= 1L << (first - 64);
+                } else {
+                    newNonAscii = true;
+                }
+            }
+            return new FirstChars(newLow, newHigh, newNonAscii);
+        }
+    }
+}
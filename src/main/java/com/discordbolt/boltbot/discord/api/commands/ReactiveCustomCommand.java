@@ -0,0 +1,46 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.exceptions.CommandException;
+import com.sun.istack.internal.NotNull;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+/**
+ * A command which runs without blocking. Instead of implementing {@link
+ * #execute(CommandContext)}, it returns a Publisher from {@link #run(CommandContext)} which the
+ * Command API subscribes to, treating the command as finished once it completes.
+ */
+public abstract class ReactiveCustomCommand extends CustomCommand {
+
+    ReactiveCustomCommand(BotCommand a) {
+        super(a);
+    }
+
+    public ReactiveCustomCommand(@NotNull String[] command, @NotNull String description, @NotNull String usage, @NotNull String module) {
+        super(command, description, usage, module);
+    }
+
+    public ReactiveCustomCommand(@NotNull String[] command) {
+        super(command);
+    }
+
+    /**
+     * Run the command
+     *
+     * @return Publisher completing once the command is done, or null if it is already done
+     */
+    @Override
+    public abstract Publisher<?> run(CommandContext commandContext) throws CommandException;
+
+    /**
+     * Run the command and block until the Publisher returned by {@link #run(CommandContext)}
+     * completes. The Command API never calls this, it subscribes to {@link #run(CommandContext)}.
+     */
+    @Override
+    public final void execute(CommandContext commandContext) throws CommandException {
+        Publisher<?> result = run(commandContext);
+        if (result != null) {
+            Mono.from(result).then().block();
+        }
+    }
+}
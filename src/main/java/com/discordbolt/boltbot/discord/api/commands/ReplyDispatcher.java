@@ -0,0 +1,274 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.MessageChannel;
+import discord4j.rest.http.client.ClientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Sends command replies through one queue per channel. A channel sends one reply at a time and
+ * paces itself by a local model of Discord's message route bucket, which is corrected whenever
+ * Discord answers with a 429. Replies are sent as they are while the bucket has room. Only the
+ * reply taking its last permit is merged with the plain text replies queued behind it, so replies
+ * to different commands share a message only when the channel is saturated.
+ */
+class ReplyDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplyDispatcher.class);
+
+    // Discord allows 5 messages per 5 seconds in a channel
+    private static final int ROUTE_PERMITS = 5;
+    private static final Duration ROUTE_PERIOD = Duration.ofSeconds(5);
+
+    static final int MESSAGE_LIMIT = 2000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MIN_SWEEP_INTERVAL = 1024;
+
+    private final long routeInterval;
+    private final long routeTolerance;
+    private final Scheduler timer = Schedulers.parallel();
+    private final Map<Long, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger untilSweep = new AtomicInteger(MIN_SWEEP_INTERVAL);
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    ReplyDispatcher() {
+        this(ROUTE_PERMITS, ROUTE_PERIOD);
+    }
+
+    /**
+     * @param routePermits messages a channel may send per period, 0 to send without pacing
+     * @param routePeriod period of the route bucket
+     */
+    ReplyDispatcher(int routePermits, Duration routePeriod) {
+        this.routeInterval = routePermits > 0 ? routePeriod.toNanos() / routePermits : 0;
+        this.routeTolerance = routeInterval * Math.max(0, routePermits - 1);
+    }
+
+    /**
+     * Queue a reply to a channel
+     *
+     * @param channelId ID of the channel
+     * @param channel the channel, resolved when the reply is sent
+     * @param text content of the reply if it is plain text that may be merged with other replies,
+     * otherwise null
+     * @param send sends the reply to the channel
+     * @return the sent message, which is shared by all replies merged into it
+     */
+    Mono<Message> send(long channelId, Mono<MessageChannel> channel, String text, Function<MessageChannel, Mono<Message>> send) {
+        return Mono.create(sink -> {
+            Reply reply = new Reply(channel, text, send, sink);
+            ChannelQueue queue = channels.compute(channelId, (id, existing) -> {
+                ChannelQueue q = existing != null ? existing : new ChannelQueue();
+                q.replies.offer(reply);
+                return q;
+            });
+            queued.incrementAndGet();
+            drain(queue);
+
+            if (untilSweep.decrementAndGet() == 0) {
+                sweep();
+            }
+        });
+    }
+
+    /**
+     * Send the next reply of a channel if nothing is in flight and the route bucket allows it.
+     * Only one thread drains a channel at a time, others leave their work to it.
+     */
+    private void drain(ChannelQueue queue) {
+        if (queue.wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            if (queue.inFlight || queue.waiting || queue.replies.isEmpty()) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            long delay = queue.delay(now, routeTolerance);
+            if (delay > 0) {
+                queue.waiting = true;
+                timer.schedule(() -> {
+                    queue.waiting = false;
+                    drain(queue);
+                }, delay, TimeUnit.NANOSECONDS);
+                continue;
+            }
+
+            queue.inFlight = true;
+            queue.take(now, routeInterval);
+            boolean saturated = queue.delay(now, routeTolerance) > 0;
+            dispatch(queue, poll(queue, saturated));
+        } while (queue.wip.decrementAndGet() != 0);
+    }
+
+    /**
+     * Take the next reply. If it uses the last permit of the route bucket, merge it with the plain
+     * text replies queued right behind it while they fit in one message.
+     *
+     * @param saturated the route bucket has no permit left after this reply
+     */
+    private List<Reply> poll(ChannelQueue queue, boolean saturated) {
+        List<Reply> batch = new ArrayList<>(1);
+        Reply head = queue.replies.poll();
+        batch.add(head);
+        if (saturated && head.text != null) {
+            int length = head.text.length();
+            Reply next;
+            while ((next = queue.replies.peek()) != null && next.text != null && length + 1 + next.text.length() <= MESSAGE_LIMIT) {
+                batch.add(queue.replies.poll());
+                length += 1 + next.text.length();
+            }
+        }
+        queued.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void dispatch(ChannelQueue queue, List<Reply> batch) {
+        Reply head = batch.get(0);
+        Mono<Message> request;
+        if (batch.size() == 1) {
+            request = head.channel.flatMap(head.send);
+        } else {
+            StringBuilder content = new StringBuilder(head.text);
+            for (int i = 1; i < batch.size(); i++) {
+                content.append('\n').append(batch.get(i).text);
+            }
+            request = head.channel.flatMap(c -> c.createMessage(content.toString()));
+            coalesced.add(batch.size() - 1);
+        }
+
+        request.subscribe(message -> batch.forEach(reply -> reply.sink.success(message)), error -> {
+            if (ClientException.isStatusCode(429).test(error)) {
+                rateLimited.increment();
+                long retryAfter = retryAfter((ClientException) error);
+                LOGGER.debug("Rate limited sending {} replies, retrying in {} ms", batch.size(), TimeUnit.NANOSECONDS.toMillis(retryAfter));
+                queue.block(System.nanoTime(), retryAfter, routeTolerance);
+                requeue(queue, batch, (ClientException) error);
+            } else {
+                batch.forEach(reply -> reply.sink.error(error));
+            }
+            complete(queue);
+        }, () -> {
+            sent.increment();
+            batch.forEach(reply -> reply.sink.success());
+            complete(queue);
+        });
+    }
+
+    private void complete(ChannelQueue queue) {
+        queue.inFlight = false;
+        drain(queue);
+    }
+
+    /**
+     * Put replies back at the front of their queue after a 429, failing those which have been
+     * tried too often. A failed reply is logged instead of being answered with an error reply,
+     * which would only queue behind the same saturated channel.
+     */
+    private void requeue(ChannelQueue queue, List<Reply> batch, ClientException error) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Reply reply = batch.get(i);
+            if (++reply.attempts >= MAX_ATTEMPTS) {
+                LOGGER.warn("Dropping a reply rate limited {} times", reply.attempts);
+                reply.sink.error(error);
+            } else {
+                queue.replies.offerFirst(reply);
+                queued.incrementAndGet();
+            }
+        }
+    }
+
+    private static long retryAfter(ClientException error) {
+        Object retryAfter = error.getErrorResponse() != null ? error.getErrorResponse().getFields().get("retry_after") : null;
+        if (retryAfter instanceof Number) {
+            return TimeUnit.MILLISECONDS.toNanos(((Number) retryAfter).longValue());
+        }
+        return ROUTE_PERIOD.toNanos();
+    }
+
+    /**
+     * Remove the queues of channels which have nothing queued and a full route bucket
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Long channelId : channels.keySet()) {
+            channels.computeIfPresent(channelId, (id, queue) -> queue.isIdle(now) ? null : queue);
+        }
+        untilSweep.set(Math.max(MIN_SWEEP_INTERVAL, channels.size()));
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("queueDepth", queued.get());
+        snapshot.put("channels", channels.size());
+        snapshot.put("sent", sent.sum());
+        snapshot.put("coalesced", coalesced.sum());
+        snapshot.put("rateLimited", rateLimited.sum());
+        return snapshot;
+    }
+
+    private static class ChannelQueue {
+
+        private final Deque<Reply> replies = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean inFlight;
+        private volatile boolean waiting;
+        // Time the route bucket is full again, only written by the drain or while a reply is in flight
+        private volatile long fullAt = System.nanoTime();
+
+        private long delay(long now, long tolerance) {
+            long start = fullAt - now > 0 ? fullAt : now;
+            return start - now - tolerance;
+        }
+
+        private void take(long now, long interval) {
+            fullAt = (fullAt - now > 0 ? fullAt : now) + interval;
+        }
+
+        private void block(long now, long nanos, long tolerance) {
+            fullAt = now + nanos + tolerance;
+        }
+
+        private boolean isIdle(long now) {
+            return replies.isEmpty() && !inFlight && !waiting && wip.get() == 0 && fullAt - now <= 0;
+        }
+    }
+
+    private static class Reply {
+
+        private final Mono<MessageChannel> channel;
+        private final String text;
+        private final Function<MessageChannel, Mono<Message>> send;
+        private final MonoSink<Message> sink;
+        private int attempts;
+
+        private Reply(Mono<MessageChannel> channel, String text, Function<MessageChannel, Mono<Message>> send, MonoSink<Message> sink) {
+            this.channel = channel;
+            this.text = text;
+            this.send = send;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.util.LatencyHistogram;
+import discord4j.core.DiscordClient;
+import discord4j.core.event.domain.Event;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event and command statistics of a single gateway shard
+ */
+class ShardStats {
+
+    private final DiscordClient client;
+    private final int index;
+    private final LongAdder events = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    // Messages rejected before any entity was resolved, and those which had a prefix but no command
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // Events of the current second, and the count of the last complete second
+    private final LongAdder eventsThisSecond = new LongAdder();
+    private volatile long currentSecond;
+    private volatile long eventsLastSecond;
+
+    ShardStats(DiscordClient client, int index) {
+        this.client = client;
+        this.index = index;
+        client.getEventDispatcher().on(Event.class).subscribe(event -> recordEvent());
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    DiscordClient getClient() {
+        return client;
+    }
+
+    private void recordEvent() {
+        events.increment();
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        if (second != currentSecond) {
+            // Racing threads may attribute a few events to the wrong second, which is fine for a rate
+            long last = eventsThisSecond.sumThenReset();
+            eventsLastSecond = second == currentSecond + 1 ? last : 0;
+            currentSecond = second;
+        }
+        eventsThisSecond.increment();
+    }
+
+    /**
+     * Number of events received in the last complete second
+     */
+    long getEventsPerSecond() {
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - currentSecond;
+        if (elapsed == 0) {
+            return eventsLastSecond;
+        }
+        return elapsed == 1 ? eventsThisSecond.sum() : 0;
+    }
+
+    void recordMessage() {
+        messages.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordUnmatched() {
+        unmatched.increment();
+    }
+
+    /**
+     * Record a command message which was received before and not dispatched again
+     */
+    void recordDuplicate() {
+        duplicates.increment();
+    }
+
+    /**
+     * Record a message dispatched to a command
+     */
+    void recordCommand() {
+        commands.increment();
+    }
+
+    /**
+     * Record the end-to-end latency of a command received on this shard
+     */
+    void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("connected", client.isConnected());
+        snapshot.put("gatewayLatencyMillis", client.getResponseTime());
+        snapshot.put("events", events.sum());
+        snapshot.put("eventsPerSecond", getEventsPerSecond());
+        snapshot.put("messages", messages.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("unmatched", unmatched.sum());
+        snapshot.put("duplicates", duplicates.sum());
+        snapshot.put("dispatched", commands.sum());
+        snapshot.put("latency", latency.snapshot());
+        return snapshot;
+    }
+}
@@ -0,0 +1,37 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+/**
+ * Stages of the command lifecycle, from receiving a message to the reply being sent
+ */
+public enum Stage {
+
+    /**
+     * Receiving the message until it is known to start with the command prefix
+     */
+    FILTER,
+
+    /**
+     * Tokenizing the message and finding the matching command
+     */
+    MATCH,
+
+    /**
+     * Running the validity checks of the command
+     */
+    CHECK,
+
+    /**
+     * Executing the command
+     */
+    EXECUTE,
+
+    /**
+     * Sending a reply, from replyWith being subscribed to until the message is created
+     */
+    REPLY,
+
+    /**
+     * Receiving the message until the first reply is sent
+     */
+    END_TO_END
+}
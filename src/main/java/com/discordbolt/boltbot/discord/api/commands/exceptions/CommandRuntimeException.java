@@ -9,4 +9,8 @@ public class CommandRuntimeException extends RuntimeException {
     public CommandRuntimeException(String message) {
         super(message);
     }
+
+    public CommandRuntimeException(Throwable cause) {
+        super(ExceptionMessage.COMMAND_PROCESS_EXCEPTION, cause);
+    }
 }
@@ -22,6 +22,16 @@ public interface ExceptionMessage {
      */
     String COMMAND_PROCESS_EXCEPTION = "An error has occurred while processing your command. Please try again later.";
 
+    /**
+     * The default message to respond with when too many commands of a module are already running or waiting
+     */
+    String COMMAND_BUSY = "Too many commands are running right now. Please try again shortly.";
+
+    /**
+     * The default message to respond with when a user or guild uses a command more often than its cooldown or rate allows
+     */
+    String RATE_LIMITED = "You are using this command too often. Please slow down.";
+
     /**
      * The default message to respond with when a CommandStateException is thrown
      */
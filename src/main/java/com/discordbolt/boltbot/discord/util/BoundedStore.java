@@ -0,0 +1,233 @@
+package com.discordbolt.boltbot.discord.util;
+
+import discord4j.store.api.Store;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * A Discord4J store holding at most {@code maxEntries} entities. Discord4J falls back to the REST
+ * API for entities missing from a store, so an evicted entity costs one request the next time it
+ * is needed.
+ * <p>
+ * Entities are kept in a sorted concurrent map, so lookups take no lock and range queries, such as
+ * the members of a guild, iterate a live view of the map instead of a copy. When full, the store
+ * evicts with the CLOCK approximation of LRU: entities wait in a queue in insertion order, and one
+ * used since it was last looked at is queued again instead of being evicted.
+ *
+ * @param <K> key type
+ * @param <V> entity type
+ */
+public class BoundedStore<K extends Comparable<K>, V extends Serializable> implements Store<K, V> {
+
+    private final int maxEntries;
+    private final ConcurrentSkipListMap<K, Node<K, V>> map = new ConcurrentSkipListMap<>();
+    // Every live node once, plus nodes deleted since the last purge
+    private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedStore(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A bounded store needs room for at least one entity");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Mono<Void> save(K key, V value) {
+        return Mono.fromRunnable(() -> put(key, value));
+    }
+
+    @Override
+    public Mono<Void> save(Publisher<Tuple2<K, V>> entries) {
+        return Flux.from(entries).doOnNext(entry -> put(entry.getT1(), entry.getT2())).then();
+    }
+
+    @Override
+    public Mono<V> find(K key) {
+        return Mono.fromSupplier(() -> get(key));
+    }
+
+    @Override
+    public Flux<V> findInRange(K start, K end) {
+        return Flux.defer(() -> Flux.fromIterable(range(start, end).values())).map(node -> node.value);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) size());
+    }
+
+    @Override
+    public Mono<Void> delete(K key) {
+        return Mono.fromRunnable(() -> remove(key));
+    }
+
+    @Override
+    public Mono<Void> delete(Publisher<K> keys) {
+        return Flux.from(keys).doOnNext(this::remove).then();
+    }
+
+    @Override
+    public Mono<Void> deleteInRange(K start, K end) {
+        return Mono.fromRunnable(() -> range(start, end).keySet().forEach(this::remove));
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(this::clear);
+    }
+
+    @Override
+    public Flux<K> keys() {
+        return Flux.defer(() -> Flux.fromIterable(map.keySet()));
+    }
+
+    @Override
+    public Flux<V> values() {
+        return Flux.defer(() -> Flux.fromIterable(map.values())).map(node -> node.value);
+    }
+
+    @Override
+    public Flux<Tuple2<K, V>> entries() {
+        return Flux.defer(() -> Flux.fromIterable(map.values())).map(node -> Tuples.of(node.key, node.value));
+    }
+
+    @Override
+    public Mono<Void> invalidate() {
+        return Mono.fromRunnable(this::clear);
+    }
+
+    /**
+     * Live view of the keys from start, inclusive, to end, exclusive
+     */
+    private NavigableMap<K, Node<K, V>> range(K start, K end) {
+        if (start.compareTo(end) >= 0) {
+            return Collections.emptyNavigableMap();
+        }
+        return map.subMap(start, true, end, false);
+    }
+
+    private void put(K key, V value) {
+        Node<K, V> created = null;
+        while (true) {
+            Node<K, V> existing = map.get(key);
+            if (existing != null) {
+                existing.value = value;
+                existing.referenced = true;
+                // Done unless it was deleted meanwhile
+                if (map.get(key) == existing) {
+                    return;
+                }
+                continue;
+            }
+            if (created == null) {
+                created = new Node<>(key, value);
+            }
+            if (map.putIfAbsent(key, created) == null) {
+                clock.offer(created);
+                if (size.incrementAndGet() > maxEntries) {
+                    evict();
+                }
+                return;
+            }
+        }
+    }
+
+    private V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    private void remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node != null) {
+            size.decrementAndGet();
+            // Deleted nodes stay queued until eviction reaches them, purge them if they pile up
+            if (deleted.incrementAndGet() > Math.max(size.get(), maxEntries / 4)) {
+                purge();
+            }
+        }
+    }
+
+    private void clear() {
+        map.keySet().forEach(this::remove);
+    }
+
+    /**
+     * Evict entities until the store is within its bound. Only one thread evicts at a time.
+     */
+    private synchronized void evict() {
+        while (size.get() > maxEntries) {
+            Node<K, V> node = clock.poll();
+            if (node == null) {
+                return;
+            }
+            if (map.get(node.key) != node) {
+                deleted.decrementAndGet();
+            } else if (node.referenced) {
+                node.referenced = false;
+                clock.offer(node);
+            } else if (map.remove(node.key, node)) {
+                size.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+
+    private synchronized void purge() {
+        clock.removeIf(node -> map.get(node.key) != node);
+        deleted.set(0);
+    }
+
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Number of entities evicted to make room for new ones
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedStore@" + Integer.toHexString(hashCode()) + "{maxEntries=" + maxEntries + "}";
+    }
+
+    private static class Node<K, V> {
+
+        private final K key;
+        private volatile V value;
+        // Used since the clock last passed it
+        private volatile boolean referenced;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.discordbolt.boltbot.discord.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads the command and module indexes written by the BoltBot annotation processor at compile
+ * time.
+ */
+public class ClassIndex {
+
+    public static final String COMMAND_INDEX = "META-INF/boltbot/commands";
+    public static final String MODULE_INDEX = "META-INF/boltbot/modules";
+
+    /**
+     * Read every entry of an index resource on the classpath
+     *
+     * @param resource index resource name
+     * @param packagePrefix only entries in this package are returned
+     * @return entries of the index, or empty if no index was generated
+     */
+    public static Optional<List<String>> read(String resource, String packagePrefix) {
+        try {
+            Enumeration<URL> urls = ClassIndex.class.getClassLoader().getResources(resource);
+            if (!urls.hasMoreElements()) {
+                return Optional.empty();
+            }
+
+            List<String> entries = new ArrayList<>();
+            while (urls.hasMoreElements()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && line.startsWith(packagePrefix)) {
+                            entries.add(line);
+                        }
+                    }
+                }
+            }
+            return Optional.of(entries);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.discordbolt.boltbot.discord.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token buckets keyed by a long, allowing {@code permits} acquisitions per {@code
+ * period} for every key. Each bucket is a single timestamp updated with compare-and-set: the time
+ * at which the bucket is full again. A full bucket holds no information, so full buckets are
+ * evicted from time to time and memory only grows with the number of recently active keys.
+ */
+public class RateLimiter {
+
+    private static final int MIN_SWEEP_INTERVAL = 1024;
+
+    private final long interval;
+    private final long tolerance;
+    private final LongSupplier nanoTime;
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger untilSweep = new AtomicInteger(MIN_SWEEP_INTERVAL);
+
+    public enum Result {
+        ACQUIRED,
+        /**
+         * The bucket is empty, and this is the first rejection since the last acquisition
+         */
+        LIMITED,
+        /**
+         * The bucket is empty and an earlier acquisition was already rejected
+         */
+        STILL_LIMITED
+    }
+
+    /**
+     * @param permits number of acquisitions allowed per period, and the burst size
+     * @param period period in which the bucket refills completely
+     */
+    public RateLimiter(int permits, Duration period) {
+        this(permits, period, System::nanoTime);
+    }
+
+    /**
+     * @param permits number of acquisitions allowed per period, and the burst size
+     * @param period period in which the bucket refills completely
+     * @param nanoTime clock in nanoseconds, such as {@link System#nanoTime()}
+     */
+    public RateLimiter(int permits, Duration period, LongSupplier nanoTime) {
+        if (permits < 1 || period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("A rate limit needs at least one permit per positive period");
+        }
+        this.interval = period.toNanos() / permits;
+        this.tolerance = interval * (permits - 1);
+        this.nanoTime = nanoTime;
+    }
+
+    public Result tryAcquire(long key) {
+        long now = nanoTime.getAsLong();
+        if (untilSweep.decrementAndGet() == 0) {
+            sweep(now);
+        }
+
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+            Result result = bucket.tryAcquire(now, interval, tolerance);
+            if (result != null) {
+                return result;
+            }
+            // Lost a race with eviction, the bucket was full so start over with a new one
+            buckets.remove(key, bucket);
+        }
+    }
+
+    /**
+     * Evict all full buckets. Sweeps are spaced by at least the number of buckets, so the cost
+     * per acquisition stays constant.
+     */
+    private void sweep(long now) {
+        buckets.values().removeIf(bucket -> bucket.tryEvict(now));
+        untilSweep.set(Math.max(MIN_SWEEP_INTERVAL, buckets.size()));
+    }
+
+    /**
+     * Number of buckets currently held
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private static class Bucket {
+
+        private static final long EVICTED = Long.MIN_VALUE;
+        private static final AtomicLongFieldUpdater<Bucket> FULL_AT = AtomicLongFieldUpdater.newUpdater(Bucket.class, "fullAt");
+        private static final AtomicIntegerFieldUpdater<Bucket> LIMITED = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "limited");
+
+        // Time the bucket is full again, or EVICTED
+        private volatile long fullAt;
+        private volatile int limited;
+
+        private Bucket(long now) {
+            this.fullAt = now;
+        }
+
+        /**
+         * @return the result, or null if the bucket has been evicted
+         */
+        private Result tryAcquire(long now, long interval, long tolerance) {
+            while (true) {
+                long current = fullAt;
+                if (current == EVICTED) {
+                    return null;
+                }
+                long start = current - now > 0 ? current : now;
+                if (start - now > tolerance) {
+                    return LIMITED.compareAndSet(this, 0, 1) ? Result.LIMITED : Result.STILL_LIMITED;
+                }
+                if (FULL_AT.compareAndSet(this, current, start + interval)) {
+                    if (limited != 0) {
+                        limited = 0;
+                    }
+                    return Result.ACQUIRED;
+                }
+            }
+        }
+
+        private boolean tryEvict(long now) {
+            long current = fullAt;
+            return current != EVICTED && current - now <= 0 && FULL_AT.compareAndSet(this, current, EVICTED);
+        }
+    }
+}
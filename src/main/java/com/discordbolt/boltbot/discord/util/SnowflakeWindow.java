@@ -0,0 +1,121 @@
+package com.discordbolt.boltbot.discord.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent set of the Discord snowflakes seen within a time window, with a fixed memory budget.
+ * A snowflake carries its own creation time, so the set stores nothing but the snowflakes: one
+ * long per slot. Slots are grouped in small buckets and a snowflake can only live in its own
+ * bucket. Lookups take no lock; an add claims the bucket with a single compare-and-set on its
+ * version, which fails if the bucket changed since it was scanned, so two threads adding the same
+ * snowflake cannot both see it as new. When a bucket is full the oldest snowflake in it is
+ * replaced, so a snowflake may be forgotten before its window ends if the set is too small for the
+ * traffic; this is counted.
+ */
+public class SnowflakeWindow {
+
+    private static final long DISCORD_EPOCH = 1420070400000L;
+    private static final int WAYS = 4;
+
+    private final AtomicLongArray slots;
+    // Per bucket, odd while a thread writes to the bucket
+    private final AtomicIntegerArray versions;
+    private final int bucketMask;
+    private final long windowMillis;
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder earlyEvictions = new LongAdder();
+
+    /**
+     * @param capacity minimum number of snowflakes held, rounded up to a power of two
+     * @param window how long a snowflake is remembered after it was created
+     */
+    public SnowflakeWindow(int capacity, Duration window) {
+        int size = Integer.highestOneBit(Math.max(WAYS, capacity) - 1) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.versions = new AtomicIntegerArray(size / WAYS);
+        this.bucketMask = size / WAYS - 1;
+        this.windowMillis = window.toMillis();
+    }
+
+    /**
+     * Record a snowflake as seen
+     *
+     * @return true the first time a snowflake is seen within the window, false for a duplicate
+     */
+    public boolean add(long snowflake) {
+        long oldest = System.currentTimeMillis() - windowMillis;
+        if (createdAt(snowflake) < oldest) {
+            // Older than the window, whether it was seen before is no longer known
+            return true;
+        }
+
+        int bucket = bucket(snowflake);
+        int base = bucket * WAYS;
+        while (true) {
+            int version = versions.get(bucket);
+            if ((version & 1) != 0) {
+                // Another thread is writing one slot of the bucket
+                Thread.onSpinWait();
+                continue;
+            }
+            int victim = base;
+            long victimRank = Long.MAX_VALUE;
+            for (int i = base; i < base + WAYS; i++) {
+                long value = slots.get(i);
+                if (value == snowflake) {
+                    duplicates.increment();
+                    return false;
+                }
+                // Empty and expired slots are free, otherwise replace the oldest snowflake
+                long rank = value == 0 || createdAt(value) < oldest ? Long.MIN_VALUE : value;
+                if (rank < victimRank) {
+                    victim = i;
+                    victimRank = rank;
+                }
+            }
+            if (versions.compareAndSet(bucket, version, version + 1)) {
+                slots.set(victim, snowflake);
+                versions.set(bucket, version + 2);
+                if (victimRank != Long.MIN_VALUE) {
+                    earlyEvictions.increment();
+                }
+                return true;
+            }
+            // Another thread changed the bucket, look again in case it added the same snowflake
+        }
+    }
+
+    private int bucket(long snowflake) {
+        long h = snowflake * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & bucketMask;
+    }
+
+    private static long createdAt(long snowflake) {
+        return (snowflake >>> 22) + DISCORD_EPOCH;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    public Duration getWindow() {
+        return Duration.ofMillis(windowMillis);
+    }
+
+    /**
+     * Number of snowflakes rejected as seen before
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Number of snowflakes forgotten before their window ended to make room for new ones
+     */
+    public long getEarlyEvictions() {
+        return earlyEvictions.sum();
+    }
+}
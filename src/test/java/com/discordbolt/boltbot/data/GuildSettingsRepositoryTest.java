@@ -0,0 +1,118 @@
+package com.discordbolt.boltbot.data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class GuildSettingsRepositoryTest {
+
+    private static final int BATCH_SIZE = 100;
+
+    private InMemoryStore store;
+    private GuildSettingsRepository repository;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryStore();
+        // Flush only when the test asks for it
+        repository = new GuildSettingsRepository(store, Duration.ofHours(1), BATCH_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        store.failingCalls.clear();
+        repository.shutdown();
+    }
+
+    @Test
+    public void loadServesStoredPrefixes() {
+        GuildSettings saved = new GuildSettings(1);
+        saved.setCommandPrefixes(Arrays.asList("?", "bolt "));
+        store.documents.put(1L, saved);
+
+        assertEquals(1, (long) repository.load().count().block());
+        assertEquals(Arrays.asList("?", "bolt "), repository.getCommandPrefixes(1));
+        assertNull(repository.getCommandPrefixes(2));
+    }
+
+    @Test
+    public void flushWritesChangesInBatches() {
+        for (long id = 1; id <= 250; id++) {
+            repository.setCommandPrefixes(id, Collections.singletonList("?"));
+        }
+
+        repository.flush().block();
+
+        assertEquals(250, store.documents.size());
+        assertEquals(3, store.calls);
+        assertEquals(Collections.singletonList("?"), store.documents.get(250L).getCommandPrefixes());
+    }
+
+    @Test
+    public void failedBatchDoesNotDropLaterBatches() {
+        for (long id = 1; id <= 250; id++) {
+            repository.setCommandPrefixes(id, Collections.singletonList("?"));
+        }
+        store.failingCalls.add(1);
+
+        try {
+            repository.flush().block();
+            fail("A failed batch is reported");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(150, store.documents.size());
+
+        // The failed batch is written with the next flush
+        repository.flush().block();
+        assertEquals(250, store.documents.size());
+    }
+
+    @Test
+    public void restoringDefaultPrefixIsPersisted() {
+        repository.setCommandPrefixes(1, Collections.singletonList("?"));
+        repository.flush().block();
+
+        repository.setCommandPrefixes(1, null);
+        repository.flush().block();
+
+        assertNull(store.documents.get(1L).getCommandPrefixes());
+    }
+
+    private static class InMemoryStore implements GuildSettingsStore {
+
+        private final Map<Long, GuildSettings> documents = new ConcurrentHashMap<>();
+        private final List<Integer> failingCalls = Collections.synchronizedList(new ArrayList<>());
+        private int calls;
+
+        @Override
+        public Flux<GuildSettings> loadAll() {
+            return Flux.fromIterable(new ArrayList<>(documents.values()));
+        }
+
+        @Override
+        public Mono<Void> saveAll(Collection<GuildSettings> settings) {
+            return Mono.defer(() -> {
+                int call = calls++;
+                if (failingCalls.contains(call)) {
+                    return Mono.error(new IllegalStateException("Store unavailable"));
+                }
+                settings.forEach(s -> documents.put(s.getId(), new GuildSettings(s)));
+                return Mono.empty();
+            });
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.discordbolt.boltbot.data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Flux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the store against the embedded MongoDB
+ */
+@RunWith(SpringRunner.class)
+@DataMongoTest(properties = {"spring.data.mongodb.host=localhost", "spring.data.mongodb.database=BoltBot-Test"})
+public class MongoGuildSettingsStoreTest {
+
+    private static final int LOAD_TEST_GUILDS = 100_000;
+    private static final Duration LOAD_TEST_LIMIT = Duration.ofSeconds(10);
+
+    @Autowired
+    private ReactiveMongoTemplate mongo;
+
+    private MongoGuildSettingsStore store;
+
+    @Before
+    public void setUp() {
+        mongo.dropCollection(GuildSettings.class).block();
+        store = new MongoGuildSettingsStore(mongo);
+    }
+
+    @Test
+    public void saveAllUpsertsAndLoadAllReadsBack() {
+        store.saveAll(Arrays.asList(settings(1, "?"), settings(2, "bolt ", "!"))).block();
+        store.saveAll(Arrays.asList(settings(1, "$"), new GuildSettings(3))).block();
+
+        Map<Long, GuildSettings> loaded = store.loadAll().collectMap(GuildSettings::getId, Function.identity()).block();
+        assertEquals(3, loaded.size());
+        assertEquals(Collections.singletonList("$"), loaded.get(1L).getCommandPrefixes());
+        assertEquals(Arrays.asList("bolt ", "!"), loaded.get(2L).getCommandPrefixes());
+        assertNull(loaded.get(3L).getCommandPrefixes());
+    }
+
+    @Test
+    public void loadsOneHundredThousandGuildsInSeconds() {
+        List<GuildSettings> all = new ArrayList<>(LOAD_TEST_GUILDS);
+        for (long id = 1; id <= LOAD_TEST_GUILDS; id++) {
+            all.add(settings(id, "?"));
+        }
+        Flux.fromIterable(all).buffer(500).concatMap(store::saveAll).blockLast();
+
+        GuildSettingsRepository repository = new GuildSettingsRepository(store, Duration.ofHours(1), 500);
+        try {
+            long start = System.nanoTime();
+            long loaded = repository.load().count().block();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(LOAD_TEST_GUILDS, loaded);
+            assertEquals(Collections.singletonList("?"), repository.getCommandPrefixes(LOAD_TEST_GUILDS));
+            assertTrue("Loading " + LOAD_TEST_GUILDS + " guilds took " + millis + " ms", millis < LOAD_TEST_LIMIT.toMillis());
+        } finally {
+            repository.shutdown();
+        }
+    }
+
+    private static GuildSettings settings(long id, String... prefixes) {
+        GuildSettings settings = new GuildSettings(id);
+        settings.setCommandPrefixes(Arrays.stream(prefixes).collect(Collectors.toList()));
+        return settings;
+    }
+}
@@ -0,0 +1,116 @@
+package com.discordbolt.boltbot.discord.api;
+
+import com.discordbolt.boltbot.discord.api.EntityStores.EntityType;
+import discord4j.core.DiscordClient;
+import discord4j.core.DiscordClientBuilder;
+import discord4j.store.jdk.JdkStoreService;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EntityStoresTest {
+
+    private static final int GUILDS = 10_000;
+    private static final int MEMBERS = 20;
+    private static final int MAX_MEMBERS = 20_000;
+    private static final int MAX_USERS = 20_000;
+    private static final int MAX_MESSAGES = 1_000;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    @Test
+    public void boundedStoresRetainLessHeapThanDefaultStores() {
+        SyntheticGuilds load = new SyntheticGuilds().guilds(GUILDS).members(MEMBERS).messages(5);
+
+        EntityStores unbounded = new EntityStores(EnumSet.allOf(EntityType.class), Map.of());
+        long unboundedBytes = retainedBytes(unbounded, load);
+        EntityStores bounded = new EntityStores(EnumSet.allOf(EntityType.class), maxEntries());
+        long boundedBytes = retainedBytes(bounded, load);
+
+        assertTrue("Bounded stores retained " + (boundedBytes >> 20) + " MB, default stores " + (unboundedBytes >> 20) + " MB",
+                boundedBytes < unboundedBytes / 2);
+        assertEquals((long) GUILDS * MEMBERS, size(unbounded, EntityType.MEMBER));
+        assertTrue(unbounded.isComplete(EntityType.MEMBER));
+        assertEquals(MAX_MEMBERS, size(bounded, EntityType.MEMBER));
+        assertEquals(MAX_USERS, size(bounded, EntityType.USER));
+        assertEquals(MAX_MESSAGES, size(bounded, EntityType.MESSAGE));
+        assertFalse(bounded.isComplete(EntityType.MEMBER));
+        // Guilds are unbounded either way
+        assertEquals((long) GUILDS, size(bounded, EntityType.GUILD));
+    }
+
+    @Test
+    public void uncachedTypesAreNeverStored() {
+        EntityStores stores = new EntityStores(EnumSet.of(EntityType.GUILD, EntityType.MEMBER, EntityType.USER), maxEntries());
+        DiscordClient client = client(stores, 1);
+        new SyntheticGuilds().guilds(10).members(5).populate(client);
+
+        assertEquals(10L, size(stores, EntityType.GUILD));
+        assertEquals(50L, size(stores, EntityType.MEMBER));
+        assertEquals(0L, size(stores, EntityType.CHANNEL));
+        assertEquals(0L, size(stores, EntityType.MESSAGE));
+        assertEquals(false, section(stores, EntityType.MESSAGE).get("cached"));
+    }
+
+    @Test
+    public void shardsSplitTheMaximumOfEveryBoundedType() {
+        Map<EntityType, Integer> maxEntries = new EnumMap<>(EntityType.class);
+        maxEntries.put(EntityType.MEMBER, 10);
+        EntityStores stores = new EntityStores(EnumSet.of(EntityType.GUILD, EntityType.MEMBER), maxEntries);
+        for (int shard = 0; shard < 4; shard++) {
+            new SyntheticGuilds().guilds(2).members(10).populate(client(stores, 4));
+        }
+
+        // Every shard holds at most ceil(10 / 4) members
+        assertEquals(12L, section(stores, EntityType.MEMBER).get("maxEntries"));
+        assertEquals(12L, size(stores, EntityType.MEMBER));
+        assertFalse(stores.isComplete(EntityType.MEMBER));
+    }
+
+    private long retainedBytes(EntityStores stores, SyntheticGuilds load) {
+        long before = usedAfterGc();
+        DiscordClient client = client(stores, 1);
+        load.populate(client);
+        long retained = usedAfterGc() - before;
+        Reference.reachabilityFence(client);
+        return retained;
+    }
+
+    private static DiscordClient client(EntityStores stores, int shardCount) {
+        return new DiscordClientBuilder("offline")
+                .setStoreService(stores.forShard(shardCount, new JdkStoreService()))
+                .build();
+    }
+
+    private static Map<EntityType, Integer> maxEntries() {
+        Map<EntityType, Integer> maxEntries = new EnumMap<>(EntityType.class);
+        maxEntries.put(EntityType.MEMBER, MAX_MEMBERS);
+        maxEntries.put(EntityType.USER, MAX_USERS);
+        maxEntries.put(EntityType.MESSAGE, MAX_MESSAGES);
+        return maxEntries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(EntityStores stores, EntityType type) {
+        return (Map<String, Object>) stores.snapshot().get(type.name().toLowerCase());
+    }
+
+    private static long size(EntityStores stores, EntityType type) {
+        return ((Number) section(stores, type).get("size")).longValue();
+    }
+
+    private long usedAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,160 @@
+package com.discordbolt.boltbot.discord.api;
+
+import discord4j.core.DiscordClient;
+import discord4j.core.StateHolder;
+import discord4j.core.object.data.stored.ChannelBean;
+import discord4j.core.object.data.stored.GuildBean;
+import discord4j.core.object.data.stored.MemberBean;
+import discord4j.core.object.data.stored.MessageBean;
+import discord4j.core.object.data.stored.PresenceBean;
+import discord4j.core.object.data.stored.RoleBean;
+import discord4j.core.object.data.stored.UserBean;
+import discord4j.store.api.util.LongLongTuple2;
+
+/**
+ * Synthetic guilds saved to the stores of a client the way the gateway saves them on
+ * GUILD_CREATE, with members, users, presences and recent messages
+ */
+public class SyntheticGuilds {
+
+    private static final int TEXT_CHANNEL = 0;
+
+    private int guilds = 10_000;
+    private int channels = 5;
+    private int roles = 3;
+    private int members = 50;
+    private double presences = 0.5;
+    private int messages = 20;
+
+    public SyntheticGuilds guilds(int guilds) {
+        this.guilds = guilds;
+        return this;
+    }
+
+    public SyntheticGuilds channels(int channels) {
+        this.channels = channels;
+        return this;
+    }
+
+    public SyntheticGuilds roles(int roles) {
+        this.roles = roles;
+        return this;
+    }
+
+    /**
+     * @param members members per guild, each with their own user
+     */
+    public SyntheticGuilds members(int members) {
+        this.members = members;
+        return this;
+    }
+
+    /**
+     * @param presences fraction of members with a presence
+     */
+    public SyntheticGuilds presences(double presences) {
+        this.presences = presences;
+        return this;
+    }
+
+    public SyntheticGuilds messages(int messages) {
+        this.messages = messages;
+        return this;
+    }
+
+    public int getGuilds() {
+        return guilds;
+    }
+
+    public int getMembers() {
+        return members;
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+
+    public void populate(DiscordClient client) {
+        populate(stateHolder(client));
+    }
+
+    // Discord4J 3.0 exposes the stores of a client only through the deprecated service mediator
+    @SuppressWarnings("deprecation")
+    private static StateHolder stateHolder(DiscordClient client) {
+        return client.getServiceMediator().getStateHolder();
+    }
+
+    private void populate(StateHolder state) {
+        long messageId = 1;
+        for (int g = 0; g < guilds; g++) {
+            long guildId = ((g + 1L) << 22) | 1;
+            long[] channelIds = new long[channels];
+            for (int c = 0; c < channels; c++) {
+                channelIds[c] = (guildId << 8) + c;
+                ChannelBean channel = new ChannelBean();
+                channel.setId(channelIds[c]);
+                channel.setType(TEXT_CHANNEL);
+                channel.setGuildId(guildId);
+                channel.setName("channel-" + c);
+                state.getChannelStore().save(channelIds[c], channel).block();
+            }
+            long[] roleIds = new long[roles];
+            for (int r = 0; r < roles; r++) {
+                roleIds[r] = r == 0 ? guildId : (guildId << 8) + 128 + r;
+                RoleBean role = new RoleBean();
+                role.setId(roleIds[r]);
+                role.setName(r == 0 ? "@everyone" : "role-" + r);
+                state.getRoleStore().save(roleIds[r], role).block();
+            }
+            long[] memberIds = new long[members];
+            for (int m = 0; m < members; m++) {
+                long userId = 10_000_000_000L + (long) g * 1_000_000 + m;
+                memberIds[m] = userId;
+                UserBean user = new UserBean();
+                user.setId(userId);
+                user.setUsername("user" + userId);
+                user.setDiscriminator("0001");
+                state.getUserStore().save(userId, user).block();
+
+                MemberBean member = new MemberBean();
+                member.setRoles(new long[]{roleIds[m % roles]});
+                member.setJoinedAt("2020-01-01T00:00:00+00:00");
+                state.getMemberStore().save(LongLongTuple2.of(guildId, userId), member).block();
+
+                if (m < members * presences) {
+                    PresenceBean presence = new PresenceBean();
+                    presence.setStatus("online");
+                    state.getPresenceStore().save(LongLongTuple2.of(guildId, userId), presence).block();
+                }
+            }
+            for (int i = 0; i < messages; i++) {
+                UserBean author = new UserBean();
+                author.setId(memberIds[i % members]);
+                author.setUsername("user" + memberIds[i % members]);
+                author.setDiscriminator("0001");
+                MessageBean message = new MessageBean();
+                message.setId(messageId);
+                message.setChannelId(channelIds[i % channels]);
+                message.setAuthor(author);
+                message.setContent("message number " + i + " in a busy guild");
+                message.setTimestamp("2020-01-01T00:00:00+00:00");
+                message.setMentions(new long[0]);
+                message.setMentionRoles(new long[0]);
+                state.getMessageStore().save(messageId++, message).block();
+            }
+
+            GuildBean guild = new GuildBean();
+            guild.setId(guildId);
+            guild.setName("guild" + guildId);
+            guild.setOwnerId(memberIds.length > 0 ? memberIds[0] : 0);
+            guild.setRegion("us-east");
+            guild.setRoles(roleIds);
+            guild.setEmojis(new long[0]);
+            guild.setFeatures(new String[0]);
+            guild.setChannels(channelIds);
+            guild.setMembers(memberIds);
+            guild.setMemberCount(members);
+            state.getGuildStore().save(guildId, guild).block();
+        }
+    }
+}
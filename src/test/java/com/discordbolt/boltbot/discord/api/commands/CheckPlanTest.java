@@ -0,0 +1,93 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.ValidityCheck.CheckResult;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckPlanTest {
+
+    private static final long GUILD = 100;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void cooldownRepliesOnceThenRejectsSilently() {
+        CheckPlan plan = CheckPlan.compile(command().setCooldown(Duration.ofSeconds(5)), clock::get);
+
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED_AGAIN, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED_AGAIN, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(2, GUILD));
+
+        assertFalse(CheckResult.RATE_LIMITED.getMessage().isEmpty());
+        assertTrue(CheckResult.RATE_LIMITED_AGAIN.getMessage().isEmpty());
+
+        advance(Duration.ofSeconds(5));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED, plan.checkRateLimits(1, GUILD));
+    }
+
+    @Test
+    public void guildRateLimitIsSharedByItsUsers() {
+        CheckPlan plan = CheckPlan.compile(command().setRateLimit(2, Duration.ofSeconds(10)), clock::get);
+
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(2, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED, plan.checkRateLimits(3, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED_AGAIN, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(1, GUILD + 1));
+
+        // One use every five seconds
+        advance(Duration.ofSeconds(5));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(3, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED, plan.checkRateLimits(3, GUILD));
+    }
+
+    @Test
+    public void userCooldownIsCheckedBeforeTheGuildLimit() {
+        CheckPlan plan = CheckPlan.compile(command()
+                .setCooldown(Duration.ofSeconds(5))
+                .setRateLimit(10, Duration.ofSeconds(10)), clock::get);
+
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(1, GUILD));
+        assertEquals(CheckResult.RATE_LIMITED, plan.checkRateLimits(1, GUILD));
+        assertEquals(2, plan.getRateLimitBuckets());
+    }
+
+    @Test
+    public void unknownIdsSkipTheirLimit() {
+        CheckPlan plan = CheckPlan.compile(command()
+                .setCooldown(Duration.ofSeconds(5))
+                .setRateLimit(1, Duration.ofSeconds(10)), clock::get);
+
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(0, 0));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(0, 0));
+        assertEquals(CheckResult.VALID, plan.checkRateLimits(1, 0));
+        assertEquals(CheckResult.RATE_LIMITED, plan.checkRateLimits(1, 0));
+        assertEquals(1, plan.getRateLimitBuckets());
+    }
+
+    @Test
+    public void commandWithoutLimitsHoldsNoBuckets() {
+        CheckPlan plan = CheckPlan.compile(command(), clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(CheckResult.VALID, plan.checkRateLimits(1, GUILD));
+        }
+        assertEquals(0, plan.getRateLimitBuckets());
+    }
+
+    private static CustomCommand command() {
+        return Commands.create(1).get(0);
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,155 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.discordbolt.boltbot.discord.api.commands.ValidityCheck.CheckResult;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommandExecutionPublisherTest {
+
+    private final CommandExecutionPublisher publisher = new CommandExecutionPublisher();
+
+    @Test
+    public void dropNewestKeepsTheBufferedRecords() throws InterruptedException {
+        SlowSubscriber subscriber = new SlowSubscriber();
+        Disposable disposable = publisher.subscribe(subscriber, 4, OverflowPolicy.DROP_NEWEST);
+
+        subscriber.publishWhileBlocked(10);
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), subscriber.awaitReceived(5));
+        assertEquals(6, publisher.getDropped());
+        disposable.dispose();
+    }
+
+    @Test
+    public void dropOldestKeepsTheLatestRecords() throws InterruptedException {
+        SlowSubscriber subscriber = new SlowSubscriber();
+        Disposable disposable = publisher.subscribe(subscriber, 4, OverflowPolicy.DROP_OLDEST);
+
+        subscriber.publishWhileBlocked(10);
+
+        assertEquals(List.of(0L, 7L, 8L, 9L, 10L), subscriber.awaitReceived(5));
+        assertEquals(6, publisher.getDropped());
+        disposable.dispose();
+    }
+
+    @Test
+    public void slowSubscriberOnlyLosesItsOwnRecords() throws InterruptedException {
+        SlowSubscriber slow = new SlowSubscriber();
+        Disposable slowSubscription = publisher.subscribe(slow, 4, OverflowPolicy.DROP_NEWEST);
+        Recorder fast = new Recorder();
+        Disposable fastSubscription = publisher.subscribe(fast, 64, OverflowPolicy.DROP_NEWEST);
+
+        slow.publishWhileBlocked(10);
+
+        assertEquals(11, fast.await(11).size());
+        assertEquals(5, slow.awaitReceived(5).size());
+        assertEquals(6, publisher.getDropped());
+        slowSubscription.dispose();
+        fastSubscription.dispose();
+    }
+
+    @Test
+    public void sleepingSubscriberIsWokenByEveryRecord() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        Disposable disposable = publisher.subscribe(recorder, 16, OverflowPolicy.DROP_NEWEST);
+
+        // Pauses of varying length let the subscriber park between records or race the unpark
+        for (long i = 0; i < 2000; i++) {
+            publisher.publish(execution(i));
+            if (i % 100 == 0) {
+                Thread.sleep(5);
+            } else {
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(20_000));
+            }
+            assertEquals("Record " + i, i + 1, recorder.await((int) i + 1).size());
+        }
+        assertEquals(0, publisher.getDropped());
+        disposable.dispose();
+    }
+
+    @Test
+    public void disposedSubscriberReceivesNothing() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        Disposable disposable = publisher.subscribe(recorder, 16, OverflowPolicy.DROP_NEWEST);
+        publisher.publish(execution(1));
+        recorder.await(1);
+
+        disposable.dispose();
+        publisher.publish(execution(2));
+        Thread.sleep(50);
+
+        assertTrue(disposable.isDisposed());
+        assertEquals(1, recorder.received.size());
+    }
+
+    private static CommandExecution execution(long id) {
+        return new CommandExecution(null, 0, 0, 0, CheckResult.VALID, id, 0, 0, 0);
+    }
+
+    private static class Recorder implements Consumer<CommandExecution> {
+
+        final List<Long> received = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void accept(CommandExecution execution) {
+            received.add(execution.getTimestamp());
+        }
+
+        List<Long> await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            return received;
+        }
+    }
+
+    /**
+     * Blocks on the first record until the others have been published
+     */
+    private class SlowSubscriber extends Recorder {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void accept(CommandExecution execution) {
+            super.accept(execution);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Publish record 0, then records 1 to count while the subscriber is stuck on record 0
+         */
+        void publishWhileBlocked(int count) throws InterruptedException {
+            publisher.publish(execution(0));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (long i = 1; i <= count; i++) {
+                publisher.publish(execution(i));
+            }
+            release.countDown();
+        }
+
+        List<Long> awaitReceived(int count) throws InterruptedException {
+            List<Long> received = await(count);
+            // Nothing beyond what was buffered arrives later
+            Thread.sleep(20);
+            return List.copyOf(received);
+        }
+    }
+}
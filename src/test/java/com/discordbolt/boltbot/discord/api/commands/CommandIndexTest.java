@@ -0,0 +1,138 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommandIndexTest {
+
+    private final CustomCommand help = command("help").setAliases("h", "?");
+    private final CustomCommand prefix = command("prefix");
+    private final CustomCommand prefixSet = command("prefix", "set");
+    private final CustomCommand prefixSetDefault = command("prefix", "set", "default");
+    private final CommandIndex index = new CommandIndex(Arrays.asList(help, prefix, prefixSet, prefixSetDefault));
+
+    @Test
+    public void findsBaseCommand() {
+        assertSame(help, find("help"));
+        assertSame(help, find("help with something"));
+    }
+
+    @Test
+    public void findsCommandByAlias() {
+        assertSame(help, find("h"));
+        assertSame(help, find("? me"));
+    }
+
+    @Test
+    public void subCommandsAreReachedThroughTheBaseCommand() {
+        assertSame(prefixSet, find("prefix set ?"));
+        assertSame(prefixSetDefault, find("prefix set default"));
+        assertNull(find("set"));
+    }
+
+    @Test
+    public void aliasesOnlyReplaceTheBaseCommand() {
+        CustomCommand roll = command("dice", "roll").setAliases("d");
+        CommandIndex index = new CommandIndex(Arrays.asList(roll));
+
+        assertSame(roll, index.find(CommandTokens.tokenize("d roll 20", 0)));
+        assertNull(index.find(CommandTokens.tokenize("roll", 0)));
+        assertNull(index.find(CommandTokens.tokenize("d", 0)));
+    }
+
+    @Test
+    public void matchingIgnoresCase() {
+        assertSame(help, find("HELP"));
+        assertSame(prefixSet, find("Prefix SET ?"));
+        CustomCommand stats = command("Stats", "Guild");
+        assertSame(stats, new CommandIndex(Arrays.asList(stats)).find(CommandTokens.tokenize("STATS guild", 0)));
+    }
+
+    @Test
+    public void longestPathWins() {
+        // Arguments after a sub command do not hide it, a partial sub command falls back to its parent
+        assertSame(prefixSetDefault, find("prefix set default now"));
+        assertSame(prefixSet, find("prefix set defaults"));
+        assertSame(prefix, find("prefix get"));
+        // Registration order does not matter
+        CommandIndex reversed = new CommandIndex(Arrays.asList(prefixSetDefault, prefixSet, prefix));
+        assertSame(prefixSet, reversed.find(CommandTokens.tokenize("prefix set ?", 0)));
+    }
+
+    @Test
+    public void laterCommandOnTheSamePathWins() {
+        CustomCommand first = command("ping");
+        CustomCommand second = command("ping");
+        assertSame(second, new CommandIndex(Arrays.asList(first, second)).find(CommandTokens.tokenize("ping", 0)));
+    }
+
+    @Test
+    public void unknownOrEmptyMessagesMatchNothing() {
+        assertNull(find("unknown"));
+        assertNull(find(""));
+    }
+
+    @Test
+    public void matchesTheLinearScanItReplaced() {
+        List<CustomCommand> commands = new ArrayList<>(Commands.create(200));
+        CommandIndex index = new CommandIndex(commands);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 5_000; i++) {
+            String message = randomMessage(random);
+            List<CustomCommand> matching = LinearCommandMatcher.matching(commands, message);
+            CustomCommand found = index.find(CommandTokens.tokenize(message, 0));
+            if (matching.isEmpty()) {
+                assertNull(message, found);
+                continue;
+            }
+            // The linear scan took the last match, the index takes the longest, which is the last
+            // match whenever the longer command is registered after the shorter one
+            CustomCommand longest = matching.stream().max(Comparator.comparingInt(c -> c.getCommands().size())).get();
+            assertSame(message, longest, found);
+            assertTrue(message, matching.contains(found));
+        }
+
+        // With every sub command registered after its parent, as Commands creates them, both agree
+        // on every message
+        for (int i = 0; i < 5_000; i++) {
+            String message = randomMessage(random);
+            assertSame(message, LinearCommandMatcher.find(commands, message), index.find(CommandTokens.tokenize(message, 0)));
+        }
+    }
+
+    private static String randomMessage(Random random) {
+        int n = random.nextInt(220);
+        String base = random.nextBoolean() ? "cmd" + (n & ~1) : "c" + n;
+        switch (random.nextInt(4)) {
+            case 0:
+                return base;
+            case 1:
+                return base + " sub" + (n | 1);
+            case 2:
+                return base.toUpperCase() + " SUB" + (n | 1) + " argument";
+            default:
+                return base + " argument";
+        }
+    }
+
+    private CustomCommand find(String content) {
+        return index.find(CommandTokens.tokenize(content, 0));
+    }
+
+    private static CustomCommand command(String... command) {
+        return new CustomCommand(command, "Test command", String.join(" ", command), "test") {
+            @Override
+            public void execute(CommandContext commandContext) {
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CommandTokensTest {
+
+    @Test
+    public void splitsOnWhitespace() {
+        assertEquals(Arrays.asList("help", "me"), tokens("help me", 0));
+    }
+
+    @Test
+    public void repeatedAndLeadingWhitespaceIsSkipped() {
+        assertEquals(Arrays.asList("play", "a", "song"), tokens("  play \t a\n\n  song   ", 0));
+        assertEquals(Collections.emptyList(), tokens(" \t\n ", 0));
+        assertEquals(Collections.emptyList(), tokens("", 0));
+    }
+
+    @Test
+    public void scanningStartsAfterThePrefix() {
+        assertEquals(Arrays.asList("help", "me"), tokens("!help me", 1));
+        assertEquals(Arrays.asList("ping"), tokens("bolt ping", 5));
+        assertEquals(Collections.emptyList(), tokens("!", 1));
+    }
+
+    @Test
+    public void quotedArgumentIsOneTokenWithoutQuotes() {
+        assertEquals(Arrays.asList("say", "hello  world", "now"), tokens("say \"hello  world\" now", 0));
+        assertEquals(Arrays.asList("say", "", "now"), tokens("say \"\" now", 0));
+    }
+
+    @Test
+    public void unterminatedQuoteRunsToTheEnd() {
+        assertEquals(Arrays.asList("say", "hello world "), tokens("say \"hello world ", 0));
+        assertEquals(Arrays.asList("say", ""), tokens("say \"", 0));
+    }
+
+    @Test
+    public void quotesInsideATokenAreKept() {
+        assertEquals(Arrays.asList("a\"b", "c\""), tokens("a\"b c\"", 0));
+    }
+
+    @Test
+    public void quotedTokenEndsAtTheClosingQuote() {
+        assertEquals(Arrays.asList("a b", "c"), tokens("\"a b\"c", 0));
+    }
+
+    @Test
+    public void manyTokens() {
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            expected.add("t" + i);
+            content.append("t").append(i).append(' ');
+        }
+        assertEquals(expected, tokens(content.toString(), 0));
+    }
+
+    @Test
+    public void tokensAreMaterializedOnceFromTheirOffsets() {
+        String content = "!roll 2 d20";
+        CommandTokens tokens = CommandTokens.tokenize(content, 1);
+
+        assertEquals(3, tokens.size());
+        String first = tokens.get(2);
+        assertEquals("d20", first);
+        assertSame(first, tokens.get(2));
+        assertSame(first, tokens.asList().get(2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readingPastTheLastTokenFails() {
+        CommandTokens.tokenize("one two", 0).get(2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void listViewIsUnmodifiable() {
+        CommandTokens.tokenize("one two", 0).asList().set(0, "three");
+    }
+
+    private static List<String> tokens(String content, int fromIndex) {
+        return new ArrayList<>(CommandTokens.tokenize(content, fromIndex).asList());
+    }
+}
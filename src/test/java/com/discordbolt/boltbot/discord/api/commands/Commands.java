@@ -0,0 +1,29 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic commands for tests and benchmarks
+ */
+class Commands {
+
+    static final int MODULES = 10;
+
+    /**
+     * Create commands named {@code cmd<i>} with a sub command, spread over {@value #MODULES}
+     * modules
+     */
+    static List<CustomCommand> create(int count) {
+        List<CustomCommand> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] command = i % 2 == 0 ? new String[]{"cmd" + i} : new String[]{"cmd" + (i - 1), "sub" + i};
+            commands.add(new CustomCommand(command, "Benchmark command " + i, "cmd" + i + " <arg>", "module" + (i % MODULES)) {
+                @Override
+                public void execute(CommandContext commandContext) {
+                }
+            }.setAliases("c" + i));
+        }
+        return commands;
+    }
+}
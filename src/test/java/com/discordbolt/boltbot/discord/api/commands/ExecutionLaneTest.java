@@ -0,0 +1,84 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExecutionLaneTest {
+
+    @Test
+    public void cancelledQueuedTaskIsNeverRun() {
+        ExecutionLane lane = new ExecutionLane("test", 1, 8);
+        MonoProcessor<Void> blocker = MonoProcessor.create();
+        AtomicInteger ran = new AtomicInteger();
+
+        lane.execute(blocker).subscribe();
+        Disposable cancelled = lane.execute(Mono.fromRunnable(ran::incrementAndGet)).subscribe();
+        Mono<Void> kept = lane.execute(Mono.fromRunnable(() -> ran.addAndGet(100)));
+        MonoProcessor<Void> keptResult = kept.toProcessor();
+        assertEquals(2, lane.snapshot().get("queueDepth"));
+
+        cancelled.dispose();
+        assertEquals(1, lane.snapshot().get("queueDepth"));
+
+        blocker.onComplete();
+        keptResult.block(Duration.ofSeconds(5));
+        assertEquals(100, ran.get());
+    }
+
+    @Test
+    public void cancellingRunningTaskReleasesItsSlot() throws InterruptedException {
+        ExecutionLane lane = new ExecutionLane("test", 1, 8);
+        Disposable running = lane.execute(Mono.never()).subscribe();
+        awaitActive(lane, 1);
+
+        running.dispose();
+        awaitActive(lane, 0);
+        lane.execute(Mono.empty()).block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void cancelRacingCompletionReleasesOnce() throws InterruptedException {
+        ExecutionLane lane = new ExecutionLane("test", 4, 10_000);
+        List<Disposable> executions = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            executions.add(lane.execute(Mono.empty()).subscribe());
+        }
+        executions.forEach(Disposable::dispose);
+        awaitActive(lane, 0);
+
+        // A slot released twice would let more tasks than the lane's concurrency run at once
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        List<MonoProcessor<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(lane.execute(Mono.fromRunnable(() -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                concurrent.decrementAndGet();
+            })).toProcessor());
+        }
+        results.forEach(result -> result.block(Duration.ofSeconds(10)));
+        assertEquals(0, lane.snapshot().get("active"));
+        assertEquals(4, maxConcurrent.get());
+    }
+
+    private static void awaitActive(ExecutionLane lane, int active) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!lane.snapshot().get("active").equals(active) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(active, lane.snapshot().get("active"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import discord4j.common.JacksonResourceProvider;
+import discord4j.rest.http.client.DiscordWebClient;
+import discord4j.rest.request.DiscordRequest;
+import discord4j.rest.request.Router;
+import discord4j.rest.request.RouterFactory;
+import discord4j.rest.request.RouterOptions;
+import discord4j.rest.route.Routes;
+import discord4j.rest.util.MultipartRequest;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import reactor.core.publisher.Mono;
+
+/**
+ * A Discord REST API kept in memory. Created messages and deletions are answered after a simulated
+ * latency and counted, every other request fails so unexpected cache misses show up in the
+ * report.
+ */
+class FakeRouter implements RouterFactory, Router {
+
+    private static final long BOT_ID = 1;
+
+    private final ObjectMapper mapper = new JacksonResourceProvider().getObjectMapper();
+    private final long latencyNanos;
+    private final AtomicLong messageIds = new AtomicLong(1L << 40);
+
+    private final LongAdder messagesCreated = new LongAdder();
+    private final LongAdder charactersSent = new LongAdder();
+    private final LongAdder messagesDeleted = new LongAdder();
+    private final Map<String, LongAdder> unexpected = new ConcurrentHashMap<>();
+
+    /**
+     * @param latency mean latency of a request, each request takes between half and one and a half
+     * times as long
+     */
+    FakeRouter(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    @Override
+    public Router getRouter(DiscordWebClient httpClient) {
+        return this;
+    }
+
+    @Override
+    public Router getRouter(DiscordWebClient httpClient, RouterOptions routerOptions) {
+        return this;
+    }
+
+    @Override
+    public <T> Mono<T> exchange(DiscordRequest<T> request) {
+        // Discord4J assembles fallback requests it may never subscribe to, so only count on subscription
+        return Mono.defer(() -> {
+            Mono<T> response = respond(request);
+            if (latencyNanos <= 0) {
+                return response;
+            }
+            long latency = latencyNanos / 2 + ThreadLocalRandom.current().nextLong(latencyNanos + 1);
+            return Mono.delay(Duration.ofNanos(latency)).then(response);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> respond(DiscordRequest<T> request) {
+        if (request.getRoute().equals(Routes.MESSAGE_CREATE)) {
+            return Mono.fromSupplier(() -> (T) createMessage(request));
+        }
+        if (request.getRoute().equals(Routes.MESSAGE_DELETE)) {
+            return Mono.<T>empty().doOnSuccess(v -> messagesDeleted.increment());
+        }
+        unexpected.computeIfAbsent(request.getRoute().getMethod() + " " + request.getRoute().getUriTemplate(), k -> new LongAdder()).increment();
+        return Mono.error(new IllegalStateException("Unexpected request " + request));
+    }
+
+    private Object createMessage(DiscordRequest<?> request) {
+        // URI is /channels/{channel.id}/messages
+        String[] path = request.getCompleteUri().split("/");
+        long channelId = Long.parseLong(path[path.length - 2]);
+        Object body = request.getBody() instanceof MultipartRequest ? ((MultipartRequest) request.getBody()).getCreateRequest() : request.getBody();
+        String content = body != null ? mapper.valueToTree(body).path("content").asText("") : "";
+        messagesCreated.increment();
+        charactersSent.add(content.length());
+
+        ObjectNode author = mapper.createObjectNode()
+                .put("id", BOT_ID)
+                .put("username", "BoltBot")
+                .put("discriminator", "0000")
+                .put("bot", true);
+        ObjectNode message = mapper.createObjectNode()
+                .put("id", messageIds.incrementAndGet())
+                .put("channel_id", channelId)
+                .put("content", content)
+                .put("timestamp", "2020-01-01T00:00:00+00:00")
+                .put("tts", false)
+                .put("mention_everyone", false)
+                .put("pinned", false)
+                .put("type", 0);
+        message.set("author", author);
+        message.putArray("mentions");
+        message.putArray("mention_roles");
+        message.putArray("attachments");
+        message.putArray("embeds");
+        return mapper.convertValue(message, request.getRoute().getResponseType());
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("messagesCreated", messagesCreated.sum());
+        snapshot.put("charactersSent", charactersSent.sum());
+        snapshot.put("messagesDeleted", messagesDeleted.sum());
+        Map<String, Long> unexpectedRequests = new LinkedHashMap<>();
+        unexpected.forEach((route, count) -> unexpectedRequests.put(route, count.sum()));
+        snapshot.put("unexpectedRequests", unexpectedRequests);
+        return snapshot;
+    }
+}
@@ -0,0 +1,50 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The linear scan CommandListener used to find commands before they were indexed, kept to compare
+ * the index with
+ */
+class LinearCommandMatcher {
+
+    /**
+     * @param rawCommand message content without the prefix, tokens separated by single spaces
+     * @return the last of the commands matching, in the order given
+     */
+    static CustomCommand find(List<CustomCommand> commands, String rawCommand) {
+        return commands.stream()
+                .filter(command -> command.getCommands().size() <= rawCommand.split(" ").length)
+                .filter(command -> matches(command, rawCommand))
+                .reduce((first, second) -> second)
+                .orElse(null);
+    }
+
+    /**
+     * @return every command whose base command or alias and sub commands start the raw command
+     */
+    static List<CustomCommand> matching(List<CustomCommand> commands, String rawCommand) {
+        return commands.stream()
+                .filter(command -> command.getCommands().size() <= rawCommand.split(" ").length)
+                .filter(command -> matches(command, rawCommand))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matches(CustomCommand customCommand, String userCommand) {
+        String userBaseCommand = userCommand.substring(0, userCommand.indexOf(" ") > 0 ? userCommand.indexOf(" ") : userCommand.length());
+
+        for (int i = 0; i < customCommand.getCommands().size(); i++) {
+            if (i == 0) {
+                if (!(customCommand.getCommands().get(0).equalsIgnoreCase(userBaseCommand) || (customCommand.getAliases().size() > 0 && customCommand.getAliases().stream().anyMatch(a -> a.equalsIgnoreCase(userBaseCommand))))) {
+                    return false;
+                }
+            } else {
+                if (!customCommand.getCommands().get(i).equalsIgnoreCase(userCommand.split(" ")[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.DiscordClient;
+import discord4j.core.DiscordClientBuilder;
+import discord4j.core.ServiceMediator;
+import discord4j.core.object.data.stored.ChannelBean;
+import discord4j.core.object.data.stored.GuildBean;
+import discord4j.core.object.data.stored.MemberBean;
+import discord4j.core.object.data.stored.MessageBean;
+import discord4j.core.object.data.stored.RoleBean;
+import discord4j.core.object.data.stored.UserBean;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.Role;
+import discord4j.core.object.entity.TextChannel;
+import discord4j.store.api.util.LongLongTuple2;
+import reactor.core.publisher.Hooks;
+
+/**
+ * A DiscordClient that never logs in, with helpers to put entities in its in-memory store. Entities
+ * created here are real Discord4J objects, so code under test resolves them exactly as it
+ * would from the gateway cache.
+ */
+class OfflineDiscord {
+
+    private static final int TEXT_CHANNEL = 0;
+
+    private final DiscordClient client;
+    private final ServiceMediator serviceMediator;
+
+    OfflineDiscord() {
+        this(new DiscordClientBuilder("offline"));
+    }
+
+    // Discord4J 3.0 exposes the stores of a client only through the deprecated service mediator
+    @SuppressWarnings("deprecation")
+    OfflineDiscord(DiscordClientBuilder builder) {
+        this.client = builder.build();
+        // Building the client turned on operator debugging, which DiscordConfiguration turns off
+        // unless discord.operator-debug is set
+        Hooks.resetOnOperatorDebug();
+        this.serviceMediator = client.getServiceMediator();
+    }
+
+    DiscordClient getClient() {
+        return client;
+    }
+
+    TextChannel textChannel(long id, long guildId, String name) {
+        ChannelBean bean = new ChannelBean();
+        bean.setId(id);
+        bean.setType(TEXT_CHANNEL);
+        bean.setGuildId(guildId);
+        bean.setName(name);
+        serviceMediator.getStateHolder().getChannelStore().save(id, bean).block();
+        return new TextChannel(serviceMediator, bean);
+    }
+
+    void guild(long id, long ownerId, long[] roleIds, long[] channelIds) {
+        GuildBean bean = new GuildBean();
+        bean.setId(id);
+        bean.setName("guild" + id);
+        bean.setOwnerId(ownerId);
+        bean.setRegion("us-east");
+        bean.setRoles(roleIds);
+        bean.setEmojis(new long[0]);
+        bean.setFeatures(new String[0]);
+        bean.setChannels(channelIds);
+        bean.setMembers(new long[0]);
+        serviceMediator.getStateHolder().getGuildStore().save(id, bean).block();
+    }
+
+    Role role(long guildId, long id, String name, long permissions) {
+        RoleBean bean = new RoleBean();
+        bean.setId(id);
+        bean.setName(name);
+        bean.setPermissions(permissions);
+        serviceMediator.getStateHolder().getRoleStore().save(id, bean).block();
+        return new Role(serviceMediator, bean, guildId);
+    }
+
+    Member member(long guildId, long userId, long... roleIds) {
+        UserBean user = new UserBean();
+        user.setId(userId);
+        user.setUsername("user" + userId);
+        user.setDiscriminator("0001");
+        serviceMediator.getStateHolder().getUserStore().save(userId, user).block();
+
+        MemberBean member = new MemberBean();
+        member.setRoles(roleIds);
+        member.setJoinedAt("2020-01-01T00:00:00+00:00");
+        serviceMediator.getStateHolder().getMemberStore().save(LongLongTuple2.of(guildId, userId), member).block();
+        return new Member(serviceMediator, member, user, guildId);
+    }
+
+    Message message(long id, long channelId, long authorId, String content) {
+        UserBean author = new UserBean();
+        author.setId(authorId);
+        author.setUsername("user" + authorId);
+        author.setDiscriminator("0001");
+
+        MessageBean bean = new MessageBean();
+        bean.setId(id);
+        bean.setChannelId(channelId);
+        bean.setAuthor(author);
+        bean.setContent(content);
+        bean.setMentions(new long[0]);
+        bean.setMentionRoles(new long[0]);
+        return new Message(serviceMediator, bean);
+    }
+}
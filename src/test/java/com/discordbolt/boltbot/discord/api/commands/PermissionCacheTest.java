@@ -0,0 +1,168 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.DiscordClient;
+import discord4j.core.event.EventDispatcher;
+import discord4j.core.event.domain.guild.GuildDeleteEvent;
+import discord4j.core.event.domain.guild.MemberLeaveEvent;
+import discord4j.core.event.domain.guild.MemberUpdateEvent;
+import discord4j.core.event.domain.role.RoleDeleteEvent;
+import discord4j.core.event.domain.role.RoleUpdateEvent;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Role;
+import discord4j.core.object.util.Permission;
+import discord4j.core.object.util.PermissionSet;
+import discord4j.core.object.util.Snowflake;
+import java.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.EmitterProcessor;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+
+public class PermissionCacheTest {
+
+    private static final long GUILD = 100;
+    private static final long OTHER_GUILD = 200;
+    private static final long MOD_ROLE = 101;
+    private static final long MOD = 1;
+    private static final long USER = 2;
+    private static final long SEND = PermissionSet.of(Permission.SEND_MESSAGES).getRawValue();
+    private static final long MANAGE = PermissionSet.of(Permission.MANAGE_MESSAGES).getRawValue();
+    private static final long KICK = PermissionSet.of(Permission.KICK_MEMBERS).getRawValue();
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private OfflineDiscord discord;
+    private DiscordClient client;
+    private EventDispatcher dispatcher;
+    private PermissionCache cache;
+    private Role modRole;
+
+    @Before
+    public void setUp() {
+        discord = new OfflineDiscord();
+        client = discord.getClient();
+        // Events are handled on the publishing thread
+        dispatcher = new EventDispatcher(EmitterProcessor.create(false), Schedulers.immediate());
+        cache = new PermissionCache(100);
+        cache.subscribe(dispatcher);
+
+        for (long guild : new long[]{GUILD, OTHER_GUILD}) {
+            // The @everyone role has the ID of its guild
+            discord.role(guild, guild, "@everyone", SEND);
+            discord.member(guild, USER, guild);
+        }
+        modRole = discord.role(GUILD, MOD_ROLE, "mod", MANAGE);
+        discord.member(GUILD, MOD, GUILD, MOD_ROLE);
+    }
+
+    @Test
+    public void permissionsAreResolvedOnce() {
+        assertEquals(SEND | MANAGE, permissions(GUILD, MOD));
+        assertEquals(SEND | MANAGE, permissions(GUILD, MOD));
+        assertEquals(SEND, permissions(GUILD, USER));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void roleUpdateInvalidatesItsGuild() {
+        permissions(GUILD, MOD);
+        permissions(GUILD, USER);
+        permissions(OTHER_GUILD, USER);
+
+        Role updated = discord.role(GUILD, MOD_ROLE, "mod", KICK);
+        dispatcher.publish(new RoleUpdateEvent(client, updated, modRole));
+
+        assertEquals(SEND | KICK, permissions(GUILD, MOD));
+        assertEquals(SEND, permissions(GUILD, USER));
+        assertEquals(SEND, permissions(OTHER_GUILD, USER));
+        assertEquals(1, cache.getHits());
+        assertEquals(5, cache.getMisses());
+        assertEquals(1, cache.getGuildGenerations());
+    }
+
+    @Test
+    public void roleDeleteInvalidatesItsGuild() {
+        permissions(GUILD, MOD);
+        permissions(OTHER_GUILD, USER);
+
+        discord.member(GUILD, MOD, GUILD);
+        dispatcher.publish(new RoleDeleteEvent(client, GUILD, MOD_ROLE, modRole));
+
+        assertEquals(SEND, permissions(GUILD, MOD));
+        assertEquals(SEND, permissions(OTHER_GUILD, USER));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void memberUpdateInvalidatesOnlyThatMember() {
+        permissions(GUILD, MOD);
+        Member before = client.getMemberById(Snowflake.of(GUILD), Snowflake.of(USER)).block(TIMEOUT);
+        assertEquals(SEND, permissions(GUILD, USER));
+
+        discord.member(GUILD, USER, GUILD, MOD_ROLE);
+        dispatcher.publish(new MemberUpdateEvent(client, GUILD, USER, before, new long[]{GUILD, MOD_ROLE}, null, null));
+
+        assertEquals(SEND | MANAGE, permissions(GUILD, USER));
+        assertEquals(SEND | MANAGE, permissions(GUILD, MOD));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getGuildGenerations());
+    }
+
+    @Test
+    public void memberLeaveRemovesThatMember() {
+        permissions(GUILD, MOD);
+        permissions(GUILD, USER);
+        Member member = client.getMemberById(Snowflake.of(GUILD), Snowflake.of(USER)).block(TIMEOUT);
+
+        dispatcher.publish(new MemberLeaveEvent(client, member, GUILD, member));
+
+        assertEquals(1, cache.size());
+        permissions(GUILD, USER);
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void guildDeleteClearsTheGuild() {
+        permissions(GUILD, MOD);
+        permissions(GUILD, USER);
+        permissions(OTHER_GUILD, USER);
+        dispatcher.publish(new RoleUpdateEvent(client, modRole, modRole));
+        assertEquals(1, cache.getGuildGenerations());
+
+        dispatcher.publish(new GuildDeleteEvent(client, GUILD, null, false));
+
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getGuildGenerations());
+        assertEquals(SEND, permissions(OTHER_GUILD, USER));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void permissionsResolvedAcrossAnInvalidationAreNotCached() {
+        MonoProcessor<Void> gate = MonoProcessor.create();
+        MonoProcessor<Long> lookup = cache.getPermissions(GUILD, MOD, () -> gate.then(member(GUILD, MOD))).toProcessor();
+
+        // The member resolved before the update finishes resolving after it
+        dispatcher.publish(new MemberUpdateEvent(client, GUILD, MOD, null, new long[]{GUILD}, null, null));
+        gate.onComplete();
+
+        assertEquals(SEND | MANAGE, (long) lookup.block(TIMEOUT));
+        assertEquals(0, cache.size());
+    }
+
+    private long permissions(long guildId, long memberId) {
+        return cache.getPermissions(guildId, memberId, () -> member(guildId, memberId)).block(TIMEOUT);
+    }
+
+    private Mono<Member> member(long guildId, long memberId) {
+        return client.getMemberById(Snowflake.of(guildId), Snowflake.of(memberId));
+    }
+}
@@ -0,0 +1,115 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixTableTest {
+
+    private static final List<String> DEFAULT = Collections.singletonList("!");
+
+    @Test
+    public void guildsWithoutPrefixesUseTheDefault() {
+        PrefixTable table = new PrefixTable("!").with(Collections.singletonMap(1L, Collections.singletonList("?")));
+
+        assertEquals(Collections.singletonList("?"), table.get(1).getPrefixes());
+        assertEquals(DEFAULT, table.get(2).getPrefixes());
+        assertSame(table.getDefault(), table.get(0));
+    }
+
+    @Test
+    public void emptyOrDefaultPrefixesRestoreTheDefault() {
+        Map<Long, List<String>> changes = new HashMap<>();
+        changes.put(1L, Collections.singletonList("?"));
+        changes.put(2L, Collections.singletonList("$"));
+        PrefixTable table = new PrefixTable("!").with(changes);
+
+        table = table.with(Collections.singletonMap(1L, Collections.emptyList()));
+        table = table.with(Collections.singletonMap(2L, DEFAULT));
+
+        assertEquals(0, table.size());
+        assertSame(table.getDefault(), table.get(1));
+        assertSame(table.getDefault(), table.get(2));
+    }
+
+    @Test
+    public void guildsWithTheSamePrefixesShareAMatcher() {
+        PrefixTable table = new PrefixTable("!")
+                .with(Collections.singletonMap(1L, Arrays.asList("?", "bolt ")))
+                .with(Collections.singletonMap(2L, Arrays.asList("?", "bolt ")));
+
+        assertSame(table.get(1), table.get(2));
+        assertEquals(2, table.getMatcherCount());
+    }
+
+    @Test
+    public void changingAGuildLeavesTheOldTableUnchanged() {
+        PrefixTable before = new PrefixTable("!").with(Collections.singletonMap(1L, Collections.singletonList("?")));
+        PrefixTable after = before.with(Collections.singletonMap(1L, Collections.singletonList("$")));
+
+        assertEquals(Collections.singletonList("?"), before.get(1).getPrefixes());
+        assertEquals(Collections.singletonList("$"), after.get(1).getPrefixes());
+    }
+
+    @Test
+    public void firstCharactersOfNewPrefixesStartCommands() {
+        PrefixTable table = new PrefixTable("!");
+        assertFalse(table.mayStartCommand('?'));
+        assertFalse(table.mayStartCommand('\u00e9'));
+
+        table = table.with(Collections.singletonMap(1L, Arrays.asList("?", "\u00e9lan ", "~")));
+
+        assertTrue(table.mayStartCommand('!'));
+        assertTrue(table.mayStartCommand('?'));
+        assertTrue(table.mayStartCommand('~'));
+        assertTrue(table.mayStartCommand('\u00e9'));
+        assertFalse(table.mayStartCommand('a'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void prefixesNeedAGuild() {
+        new PrefixTable("!").with(Collections.singletonMap(0L, Collections.singletonList("?")));
+    }
+
+    @Test
+    public void randomChangesMatchAMap() {
+        Random random = new Random(42);
+        List<List<String>> prefixSets = Arrays.asList(Collections.emptyList(), DEFAULT, Collections.singletonList("?"),
+                Arrays.asList("$", "bolt "), Collections.singletonList("-"));
+        Map<Long, List<String>> expected = new HashMap<>();
+        PrefixTable table = new PrefixTable("!");
+
+        for (int round = 0; round < 2_000; round++) {
+            Map<Long, List<String>> changes = new HashMap<>();
+            int batch = random.nextInt(10) == 0 ? 50 : 1;
+            for (int i = 0; i < batch; i++) {
+                // Snowflake-like IDs sharing their low bits, from a small range so guilds are changed again
+                long guildId = ((1L + random.nextInt(300)) << 22) | 1;
+                changes.put(guildId, prefixSets.get(random.nextInt(prefixSets.size())));
+            }
+            table = table.with(changes);
+            changes.forEach((guildId, prefixes) -> {
+                if (prefixes.isEmpty() || prefixes.equals(DEFAULT)) {
+                    expected.remove(guildId);
+                } else {
+                    expected.put(guildId, prefixes);
+                }
+            });
+
+            assertEquals(expected.size(), table.size());
+            for (long id = 1; id <= 300; id++) {
+                long guildId = (id << 22) | 1;
+                assertEquals(expected.getOrDefault(guildId, DEFAULT), table.get(guildId).getPrefixes());
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.discordbolt.boltbot.discord.api.commands;
+
+import discord4j.core.DiscordClientBuilder;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.MessageChannel;
+import discord4j.rest.http.client.ClientException;
+import discord4j.rest.http.client.ClientRequest;
+import discord4j.rest.json.response.ErrorResponse;
+import discord4j.rest.route.Routes;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.netty.http.client.HttpClientResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReplyDispatcherTest {
+
+    private static final long GUILD = 10;
+    private static final long CHANNEL = 20;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private FakeRouter router;
+    private OfflineDiscord discord;
+    private Mono<MessageChannel> channel;
+
+    @Before
+    public void setUp() {
+        router = new FakeRouter(Duration.ZERO);
+        discord = new OfflineDiscord(new DiscordClientBuilder("offline").setRouterFactory(router));
+        channel = Mono.just(discord.textChannel(CHANNEL, GUILD, "general"));
+    }
+
+    @Test
+    public void onlyTheReplyTakingTheLastPermitIsMerged() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(3, Duration.ofSeconds(15));
+        MonoProcessor<Void> gate = MonoProcessor.create();
+        List<MonoProcessor<Message>> replies = new ArrayList<>();
+
+        // The first reply holds the channel until the others are queued behind it
+        replies.add(dispatcher.send(CHANNEL, channel, null, c -> gate.then(c.createMessage("first"))).toProcessor());
+        for (int i = 2; i <= 5; i++) {
+            replies.add(text(dispatcher, "reply" + i));
+        }
+        assertEquals(4, dispatcher.snapshot().get("queueDepth"));
+
+        gate.onComplete();
+        assertEquals("first", content(replies.get(0)));
+        // Sent on its own, the route bucket still had a permit left after it
+        assertEquals("reply2", content(replies.get(1)));
+        assertEquals("reply3\nreply4\nreply5", content(replies.get(2)));
+        assertSame(replies.get(2).block(TIMEOUT), replies.get(3).block(TIMEOUT));
+        assertSame(replies.get(2).block(TIMEOUT), replies.get(4).block(TIMEOUT));
+
+        assertEquals(3L, dispatcher.snapshot().get("sent"));
+        assertEquals(2L, dispatcher.snapshot().get("coalesced"));
+        assertEquals(3L, router.snapshot().get("messagesCreated"));
+    }
+
+    @Test
+    public void repliesAreNotMergedWhileTheBucketHasRoom() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(5, Duration.ofSeconds(5));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals("reply" + i, content(text(dispatcher, "reply" + i)));
+        }
+
+        assertEquals(4L, dispatcher.snapshot().get("sent"));
+        assertEquals(0L, dispatcher.snapshot().get("coalesced"));
+    }
+
+    @Test
+    public void mergedReplyStaysWithinTheMessageLimit() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(2, Duration.ofSeconds(10));
+        MonoProcessor<Void> gate = MonoProcessor.create();
+        MonoProcessor<Message> first = dispatcher.send(CHANNEL, channel, null, c -> gate.then(c.createMessage("first"))).toProcessor();
+        MonoProcessor<Message> a = text(dispatcher, "a".repeat(1000));
+        MonoProcessor<Message> b = text(dispatcher, "b".repeat(999));
+        MonoProcessor<Message> c = text(dispatcher, "c");
+
+        gate.onComplete();
+        first.block(TIMEOUT);
+        // Exactly the limit with the separating newline, one more reply would not fit
+        assertEquals(ReplyDispatcher.MESSAGE_LIMIT, content(a).length());
+        assertSame(a.block(TIMEOUT), b.block(TIMEOUT));
+        // Waits for the next permit in a message of its own
+        assertFalse(c.isTerminated());
+        assertEquals(1, dispatcher.snapshot().get("queueDepth"));
+        c.dispose();
+    }
+
+    @Test
+    public void repliesWhichAreNotPlainTextAreNeverMerged() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(1, Duration.ofSeconds(10));
+        MonoProcessor<Void> gate = MonoProcessor.create();
+        MonoProcessor<Message> first = dispatcher.send(CHANNEL, channel, null, c -> gate.then(c.createMessage("embed"))).toProcessor();
+        MonoProcessor<Message> second = text(dispatcher, "second");
+
+        gate.onComplete();
+        assertEquals("embed", content(first));
+        assertFalse(second.isTerminated());
+        second.dispose();
+    }
+
+    @Test
+    public void rateLimitedReplyIsRetriedAfterRetryAfter() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(0, Duration.ZERO);
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.nanoTime();
+        Message message = dispatcher.send(CHANNEL, channel, null, rateLimited(2, 50, attempts)).block(TIMEOUT);
+
+        assertEquals("reply", message.getContent().orElse(null));
+        assertEquals(3, attempts.get());
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+        assertEquals(2L, dispatcher.snapshot().get("rateLimited"));
+    }
+
+    @Test
+    public void replyIsDroppedAfterThreeRateLimitedAttempts() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(0, Duration.ZERO);
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            dispatcher.send(CHANNEL, channel, null, rateLimited(Integer.MAX_VALUE, 10, attempts)).block(TIMEOUT);
+            fail("Expected the reply to fail");
+        } catch (ClientException e) {
+            assertTrue(ClientException.isStatusCode(429).test(e));
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(0, dispatcher.snapshot().get("queueDepth"));
+        assertEquals(0L, router.snapshot().get("messagesCreated"));
+    }
+
+    @Test
+    public void idleChannelQueuesAreSwept() {
+        ReplyDispatcher dispatcher = new ReplyDispatcher(0, Duration.ZERO);
+        MonoProcessor<Void> gate = MonoProcessor.create();
+        MonoProcessor<Message> busy = dispatcher.send(CHANNEL, channel, null, c -> gate.then(c.createMessage("busy"))).toProcessor();
+
+        // The sweep runs every 1024 replies and keeps the queue with a reply in flight
+        for (int i = 1; i < 1023; i++) {
+            dispatcher.send(CHANNEL + i, channel, "reply", c -> c.createMessage("reply")).block(TIMEOUT);
+        }
+        assertEquals(1023, dispatcher.snapshot().get("channels"));
+        dispatcher.send(CHANNEL + 1023, channel, "reply", c -> c.createMessage("reply")).block(TIMEOUT);
+        assertEquals(1, dispatcher.snapshot().get("channels"));
+
+        gate.onComplete();
+        assertEquals("busy", content(busy));
+    }
+
+    private MonoProcessor<Message> text(ReplyDispatcher dispatcher, String text) {
+        return dispatcher.send(CHANNEL, channel, text, c -> c.createMessage(text)).toProcessor();
+    }
+
+    /**
+     * Send "reply", answering the first attempts with a 429
+     */
+    private static Function<MessageChannel, Mono<Message>> rateLimited(int times, long retryAfterMillis, AtomicInteger attempts) {
+        return c -> Mono.defer(() -> attempts.incrementAndGet() <= times
+                ? Mono.error(tooManyRequests(retryAfterMillis))
+                : c.createMessage("reply"));
+    }
+
+    private static ClientException tooManyRequests(long retryAfterMillis) {
+        HttpClientResponse response = mock(HttpClientResponse.class);
+        when(response.status()).thenReturn(HttpResponseStatus.TOO_MANY_REQUESTS);
+        when(response.responseHeaders()).thenReturn(EmptyHttpHeaders.INSTANCE);
+        ErrorResponse error = new ErrorResponse();
+        error.anySetter("retry_after", retryAfterMillis);
+        return new ClientException(new ClientRequest(Routes.MESSAGE_CREATE.newRequest(CHANNEL)), response, error);
+    }
+
+    private static String content(Mono<Message> reply) {
+        return reply.block(TIMEOUT).getContent().orElse("");
+    }
+}
@@ -0,0 +1,122 @@
+package com.discordbolt.boltbot.discord.util;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedStoreTest {
+
+    @Test
+    public void evictsInInsertionOrderWhenNothingWasUsed() {
+        BoundedStore<Long, String> store = store(3, 1, 2, 3);
+
+        store.save(4L, "4").block();
+
+        assertEquals(Arrays.asList(2L, 3L, 4L), keys(store));
+        assertEquals(1, store.getEvictions());
+    }
+
+    @Test
+    public void usedEntityGetsASecondChance() {
+        BoundedStore<Long, String> store = store(3, 1, 2, 3);
+        assertEquals("1", store.find(1L).block());
+
+        store.save(4L, "4").block();
+
+        assertEquals(Arrays.asList(1L, 3L, 4L), keys(store));
+        // The second chance is used up, so 1 goes once 3 and 4 were used
+        store.find(3L).block();
+        store.find(4L).block();
+        store.save(5L, "5").block();
+        assertEquals(Arrays.asList(3L, 4L, 5L), keys(store));
+        assertEquals(2, store.getEvictions());
+    }
+
+    @Test
+    public void updatingAnEntityKeepsItsSlot() {
+        BoundedStore<Long, String> store = store(2, 1, 2);
+
+        store.save(1L, "one").block();
+
+        assertEquals(2, store.size());
+        assertEquals("one", store.find(1L).block());
+        assertEquals(0, store.getEvictions());
+    }
+
+    @Test
+    public void deletedEntitiesDoNotCountTowardsTheMaximum() {
+        BoundedStore<Long, String> store = store(3, 1, 2, 3);
+
+        store.delete(2L).block();
+        store.save(4L, "4").block();
+
+        assertEquals(Arrays.asList(1L, 3L, 4L), keys(store));
+        assertEquals(0, store.getEvictions());
+        assertEquals(3L, (long) store.count().block());
+    }
+
+    @Test
+    public void manyDeletesKeepSizeAndEvictionCorrect() {
+        BoundedStore<Long, String> store = new BoundedStore<>(100);
+        for (long round = 0; round < 50; round++) {
+            for (long key = 0; key < 100; key++) {
+                store.save(round * 1000 + key, "v").block();
+            }
+            store.deleteInRange(round * 1000, round * 1000 + 100).block();
+        }
+        assertEquals(0, store.size());
+
+        for (long key = 0; key < 150; key++) {
+            store.save(key, "v").block();
+        }
+        assertEquals(100, store.size());
+        assertEquals(50, store.getEvictions());
+    }
+
+    @Test
+    public void rangeIsStartInclusiveEndExclusive() {
+        BoundedStore<Long, String> store = store(10, 1, 2, 3, 4, 5);
+
+        assertEquals(Arrays.asList("2", "3", "4"), store.findInRange(2L, 5L).collectList().block());
+        assertEquals(0, (long) store.findInRange(4L, 4L).count().block());
+        assertEquals(0, (long) store.findInRange(5L, 1L).count().block());
+
+        store.deleteInRange(2L, 4L).block();
+        assertEquals(Arrays.asList(1L, 4L, 5L), keys(store));
+    }
+
+    @Test
+    public void invalidateClearsEverything() {
+        BoundedStore<Long, String> store = store(3, 1, 2, 3);
+
+        store.invalidate().block();
+
+        assertEquals(0, store.size());
+        assertNull(store.find(1L).block());
+        store.save(Flux.range(10, 3).map(i -> Tuples.of((long) i, "v"))).block();
+        assertEquals(Arrays.asList(10L, 11L, 12L), keys(store));
+        assertEquals(0, store.getEvictions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsRoomForOneEntity() {
+        new BoundedStore<Long, String>(0);
+    }
+
+    private static BoundedStore<Long, String> store(int maxEntries, long... keys) {
+        BoundedStore<Long, String> store = new BoundedStore<>(maxEntries);
+        for (long key : keys) {
+            store.save(key, String.valueOf(key)).block();
+        }
+        return store;
+    }
+
+    private static List<Long> keys(BoundedStore<Long, String> store) {
+        return store.keys().collectList().block();
+    }
+}
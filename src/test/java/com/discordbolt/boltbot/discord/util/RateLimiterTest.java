@@ -0,0 +1,110 @@
+package com.discordbolt.boltbot.discord.util;
+
+import com.discordbolt.boltbot.discord.util.RateLimiter.Result;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void burstOfPermitsThenOnePerInterval() {
+        RateLimiter limiter = new RateLimiter(3, Duration.ofSeconds(3), clock::get);
+
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+
+        advance(Duration.ofMillis(999));
+        assertEquals(Result.STILL_LIMITED, limiter.tryAcquire(1));
+        advance(Duration.ofMillis(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+
+        // Refilled completely after a whole period, but never beyond the burst size
+        advance(Duration.ofSeconds(10));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+    }
+
+    @Test
+    public void onlyTheFirstRejectionSinceAnAcquisitionIsLimited() {
+        RateLimiter limiter = new RateLimiter(1, Duration.ofSeconds(1), clock::get);
+
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+        assertEquals(Result.STILL_LIMITED, limiter.tryAcquire(1));
+        assertEquals(Result.STILL_LIMITED, limiter.tryAcquire(1));
+
+        advance(Duration.ofSeconds(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+    }
+
+    @Test
+    public void keysHaveBucketsOfTheirOwn() {
+        RateLimiter limiter = new RateLimiter(1, Duration.ofSeconds(1), clock::get);
+
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(2));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(2));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    public void clockWrappingAroundIsHandled() {
+        clock.set(Long.MAX_VALUE - Duration.ofMillis(500).toNanos());
+        RateLimiter limiter = new RateLimiter(1, Duration.ofSeconds(1), clock::get);
+
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+        advance(Duration.ofMillis(600));
+        assertEquals(Result.LIMITED, limiter.tryAcquire(1));
+        advance(Duration.ofMillis(400));
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+    }
+
+    @Test
+    public void idleBucketsAreEvicted() {
+        RateLimiter limiter = new RateLimiter(1, Duration.ofSeconds(1), clock::get);
+        for (int key = 1; key <= 1000; key++) {
+            limiter.tryAcquire(key);
+        }
+        assertEquals(1000, limiter.size());
+
+        // The sweep runs every 1024 acquisitions and only evicts full buckets
+        advance(Duration.ofSeconds(2));
+        limiter.tryAcquire(-1);
+        for (int i = 1001; i < 1024; i++) {
+            assertEquals(1001, limiter.size());
+            limiter.tryAcquire(-1);
+        }
+        // The active bucket kept its state
+        assertEquals(1, limiter.size());
+        assertEquals(Result.STILL_LIMITED, limiter.tryAcquire(-1));
+
+        // An evicted key starts over with a full bucket
+        assertEquals(Result.ACQUIRED, limiter.tryAcquire(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noPermitsThrows() {
+        new RateLimiter(0, Duration.ofSeconds(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroPeriodThrows() {
+        new RateLimiter(1, Duration.ZERO);
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,126 @@
+package com.discordbolt.boltbot.discord.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnowflakeWindowTest {
+
+    private static final long DISCORD_EPOCH = 1420070400000L;
+    private static final Duration WINDOW = Duration.ofMinutes(5);
+
+    @Test
+    public void duplicateWithinTheWindowIsRejected() {
+        SnowflakeWindow window = new SnowflakeWindow(1024, WINDOW);
+        long id = snowflake(System.currentTimeMillis(), 1);
+
+        assertTrue(window.add(id));
+        assertFalse(window.add(id));
+        assertFalse(window.add(id));
+        assertTrue(window.add(snowflake(System.currentTimeMillis(), 2)));
+        assertEquals(2, window.getDuplicates());
+    }
+
+    @Test
+    public void snowflakeCreatedBeforeTheWindowIsNotRemembered() {
+        SnowflakeWindow window = new SnowflakeWindow(1024, WINDOW);
+        long sixMinutesAgo = snowflake(System.currentTimeMillis() - Duration.ofMinutes(6).toMillis(), 1);
+        long fourMinutesAgo = snowflake(System.currentTimeMillis() - Duration.ofMinutes(4).toMillis(), 1);
+
+        assertTrue(window.add(sixMinutesAgo));
+        assertTrue(window.add(sixMinutesAgo));
+        assertTrue(window.add(fourMinutesAgo));
+        assertFalse(window.add(fourMinutesAgo));
+        assertEquals(1, window.getDuplicates());
+    }
+
+    @Test
+    public void expiredSnowflakesFreeTheirSlots() throws InterruptedException {
+        // A single bucket
+        SnowflakeWindow window = new SnowflakeWindow(4, Duration.ofMillis(200));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(window.add(snowflake(now, i)));
+        }
+
+        Thread.sleep(300);
+        long later = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(window.add(snowflake(later, i)));
+        }
+        assertEquals(0, window.getEarlyEvictions());
+        // The first snowflakes are older than the window now
+        assertTrue(window.add(snowflake(now, 0)));
+        assertEquals(0, window.getDuplicates());
+    }
+
+    @Test
+    public void fullBucketForgetsItsOldestSnowflake() {
+        SnowflakeWindow window = new SnowflakeWindow(4, WINDOW);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(window.add(snowflake(now - 1000 + i, 0)));
+        }
+
+        assertEquals(1, window.getEarlyEvictions());
+        // Forgotten before its window ended, so it is seen as new again
+        assertTrue(window.add(snowflake(now - 1000, 0)));
+        assertFalse(window.add(snowflake(now - 1000 + 4, 0)));
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1024, new SnowflakeWindow(1000, WINDOW).getCapacity());
+        assertEquals(4, new SnowflakeWindow(1, WINDOW).getCapacity());
+        assertEquals(WINDOW, new SnowflakeWindow(1, WINDOW).getWindow());
+    }
+
+    @Test
+    public void concurrentDeliveriesOfTheSameSnowflakeAreSeenOnce() throws Exception {
+        int threads = 8;
+        int ids = 2_000;
+        for (int round = 0; round < 20; round++) {
+            SnowflakeWindow window = new SnowflakeWindow(1 << 20, WINDOW);
+            long now = System.currentTimeMillis();
+            AtomicIntegerArray firstSeen = new AtomicIntegerArray(ids);
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    for (int i = 0; i < ids; i++) {
+                        if (window.add(snowflake(now, i))) {
+                            firstSeen.incrementAndGet(i);
+                        }
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            assertEquals(0, window.getEarlyEvictions());
+            for (int i = 0; i < ids; i++) {
+                assertEquals("Snowflake " + i + " of round " + round, 1, firstSeen.get(i));
+            }
+            assertEquals((long) (threads - 1) * ids, window.getDuplicates());
+        }
+    }
+
+    private static long snowflake(long createdAt, long increment) {
+        return ((createdAt - DISCORD_EPOCH) << 22) | increment;
+    }
+}